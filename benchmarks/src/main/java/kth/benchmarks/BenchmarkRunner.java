@@ -0,0 +1,34 @@
+package kth.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler enabled, so every result reports the
+ * allocation rate next to the throughput. Accepts the usual JMH command line options,
+ * for example a pattern selecting the benchmarks to run.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Runs the benchmarks selected on the command line.
+     *
+     * @param args JMH command line options.
+     * @throws RunnerException if a benchmark fails.
+     * @throws CommandLineOptionException if the options cannot be parsed.
+     */
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
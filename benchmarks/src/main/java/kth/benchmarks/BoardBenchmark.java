@@ -0,0 +1,63 @@
+package kth.benchmarks;
+
+import kth.model.SudokuBoard;
+import kth.model.SudokuUtilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures board construction and the checks run on every "Check" click.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardBenchmark {
+
+    private int[][] puzzle;
+    private int[][] solution;
+    private SudokuBoard board;
+
+    @Setup
+    public void setUp() {
+        int[][][] matrix = SudokuUtilities.generateSudokuMatrix(SudokuUtilities.SudokuLevel.MEDIUM);
+        puzzle = new int[9][9];
+        solution = new int[9][9];
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                puzzle[row][col] = matrix[row][col][0];
+                solution[row][col] = matrix[row][col][1];
+            }
+        }
+        board = new SudokuBoard(puzzle, solution);
+
+        // Fill half of the empty cells so the checks see a game in progress
+        int filled = 0;
+        for (int cell = 0; cell < 81; cell++) {
+            if (puzzle[cell / 9][cell % 9] == 0 && filled++ % 2 == 0) {
+                board.setCellVal(cell / 9, cell % 9, solution[cell / 9][cell % 9]);
+            }
+        }
+    }
+
+    @Benchmark
+    public SudokuBoard construct() {
+        return new SudokuBoard(puzzle, solution);
+    }
+
+    @Benchmark
+    public boolean isSolved() {
+        return board.isSolved();
+    }
+
+    @Benchmark
+    public boolean checkPartialSolution() {
+        return board.checkPartialSolution();
+    }
+}
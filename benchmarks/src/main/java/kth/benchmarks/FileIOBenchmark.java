@@ -0,0 +1,66 @@
+package kth.benchmarks;
+
+import kth.io.SudokuBoardCodec;
+import kth.io.SudokuFileIO;
+import kth.model.SudokuBoard;
+import kth.model.SudokuUtilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures saving and loading a game, both through a file and in memory.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FileIOBenchmark {
+
+    private SudokuBoard board;
+    private File file;
+    private final ByteBuffer buffer = ByteBuffer.allocate(SudokuBoardCodec.MAX_ENCODED_SIZE);
+
+    @Setup
+    public void setUp() throws IOException {
+        int[][][] matrix = SudokuUtilities.generateSudokuMatrix(SudokuUtilities.SudokuLevel.MEDIUM);
+        int[][] puzzle = new int[9][9];
+        int[][] solution = new int[9][9];
+        for (int row = 0; row < 9; row++) {
+            for (int col = 0; col < 9; col++) {
+                puzzle[row][col] = matrix[row][col][0];
+                solution[row][col] = matrix[row][col][1];
+            }
+        }
+        board = new SudokuBoard(puzzle, solution);
+        file = File.createTempFile("benchmark", ".sudoku");
+        file.deleteOnExit();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public SudokuBoard fileRoundTrip() throws IOException, ClassNotFoundException {
+        SudokuFileIO.serializeToFile(board, file);
+        return SudokuFileIO.deSerializeFromFile(file);
+    }
+
+    @Benchmark
+    public SudokuBoard codecRoundTrip() throws IOException {
+        buffer.clear();
+        SudokuBoardCodec.encode(board, buffer);
+        buffer.flip();
+        return SudokuBoardCodec.decode(buffer);
+    }
+}
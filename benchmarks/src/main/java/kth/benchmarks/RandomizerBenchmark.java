@@ -0,0 +1,48 @@
+package kth.benchmarks;
+
+import kth.model.SudokuRandomizer;
+import kth.model.SudokuUtilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the random symmetry transformation on the 3D matrix and on flat arrays.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomizerBenchmark {
+
+    private int[][][] matrix;
+    private final int[] puzzle = new int[81];
+    private final int[] solution = new int[81];
+    private long seed;
+
+    @Setup
+    public void setUp() {
+        matrix = SudokuUtilities.generateSudokuMatrix(SudokuUtilities.SudokuLevel.MEDIUM);
+        for (int cell = 0; cell < 81; cell++) {
+            puzzle[cell] = matrix[cell / 9][cell % 9][0];
+            solution[cell] = matrix[cell / 9][cell % 9][1];
+        }
+    }
+
+    @Benchmark
+    public int[][][] randomizeMatrix() {
+        SudokuRandomizer.randomizeBoard(matrix);
+        return matrix;
+    }
+
+    @Benchmark
+    public int[] randomizeFlat() {
+        SudokuRandomizer.randomizeBoard(puzzle, solution, seed++);
+        return puzzle;
+    }
+}
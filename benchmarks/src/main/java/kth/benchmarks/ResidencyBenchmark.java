@@ -0,0 +1,120 @@
+package kth.benchmarks;
+
+import kth.model.OffHeapBoard;
+import kth.model.OffHeapBoardStore;
+import kth.model.SudokuBoard;
+import kth.model.SudokuGeometry;
+import kth.model.SudokuUtilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the garbage collector for many resident games, kept either as one
+ * {@code SudokuBoard} each or in an {@code OffHeapBoardStore}. Every operation plays a move
+ * on a random game, and one operation in {@value #REPLACE_EVERY} ends a game and starts a
+ * new one in its place, as the sessions of the game server come and go. Run with the gc
+ * profiler of {@code BenchmarkRunner} and compare {@code gc.count} and {@code gc.time}. The
+ * heap and the young generation have a fixed size, so that both kinds of storage are
+ * collected after the same amount of allocation:
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar Residency -p residents=1000000
+ * </pre>
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g", "-Xmn128m"})
+@State(Scope.Thread)
+public class ResidencyBenchmark {
+
+    private static final int PUZZLES = 16;
+    private static final int REPLACE_EVERY = 64;
+
+    @Param({"100000", "1000000"})
+    private int residents;
+
+    @Param({"heap", "offHeap"})
+    private String storage;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private int[][][] puzzles;
+    private int[][][] solutions;
+    private int[] puzzleOf;
+    private SudokuBoard[] boards;
+    private OffHeapBoardStore store;
+    private OffHeapBoard view;
+    private int[] handles;
+
+    @Setup
+    public void setUp() {
+        puzzles = new int[PUZZLES][9][9];
+        solutions = new int[PUZZLES][9][9];
+        for (int i = 0; i < PUZZLES; i++) {
+            int[][][] matrix = SudokuUtilities.generateSudokuMatrix(SudokuUtilities.SudokuLevel.MEDIUM);
+            for (int row = 0; row < 9; row++) {
+                for (int col = 0; col < 9; col++) {
+                    puzzles[i][row][col] = matrix[row][col][0];
+                    solutions[i][row][col] = matrix[row][col][1];
+                }
+            }
+        }
+        puzzleOf = new int[residents];
+        if (storage.equals("heap")) {
+            boards = new SudokuBoard[residents];
+        } else {
+            store = new OffHeapBoardStore(SudokuGeometry.STANDARD);
+            view = store.view();
+            handles = new int[residents];
+        }
+        for (int game = 0; game < residents; game++) {
+            start(game, game % PUZZLES);
+        }
+    }
+
+    /**
+     * Places or clears the solution value of a random cell of a random game, first replacing
+     * the game with a new one once in {@value #REPLACE_EVERY} operations, and returns the
+     * number of filled cells.
+     */
+    @Benchmark
+    public int move() {
+        int game = random.nextInt(residents);
+        if (random.nextInt(REPLACE_EVERY) == 0) {
+            if (store != null) {
+                store.free(handles[game]);
+            }
+            start(game, random.nextInt(PUZZLES));
+        }
+        int puzzle = puzzleOf[game];
+        int row = random.nextInt(9);
+        int col = random.nextInt(9);
+        int value = random.nextBoolean() ? solutions[puzzle][row][col] : 0;
+        if (store == null) {
+            SudokuBoard board = boards[game];
+            board.setCellVal(row, col, value);
+            return board.getFilledCount();
+        }
+        OffHeapBoard board = view.bind(handles[game]);
+        board.setCellVal(row, col, value);
+        return board.getFilledCount();
+    }
+
+    /**
+     * Starts a new game in a place, as a new board or in a new slot of the store.
+     */
+    private void start(int game, int puzzle) {
+        puzzleOf[game] = puzzle;
+        SudokuBoard board = new SudokuBoard(puzzles[puzzle], solutions[puzzle]);
+        if (store == null) {
+            boards[game] = board;
+        } else {
+            handles[game] = store.add(board);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package kth.benchmarks;
+
+import kth.model.SudokuBoard;
+import kth.model.SudokuUtilities;
+import kth.server.GameSessionRegistry;
+import kth.server.SpillStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures moves played through the session registry of the game server. Every thread
+ * plays its own slice of the games, so the aggregate throughput should grow linearly with
+ * the number of threads, for example:
+ * <pre>
+ *   java -jar benchmarks/target/benchmarks.jar Session -t 1
+ *   java -jar benchmarks/target/benchmarks.jar Session -t 4
+ * </pre>
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SessionBenchmark {
+
+    private static final int MIN_GAMES = 100_000;
+    private static final int GAMES_PER_THREAD = 1024;
+    private static final int PUZZLES = 16;
+
+    private int games;
+    private GameSessionRegistry registry;
+    private long[] ids;
+    private int[][] emptyCells;
+    private int[][] solutionValues;
+    private final AtomicInteger nextSlice = new AtomicInteger();
+
+    /**
+     * The games one thread plays. The slices of different threads do not overlap, and the
+     * other games stay resident without being played.
+     */
+    @State(Scope.Thread)
+    public static class Player {
+        private final SplittableRandom random = new SplittableRandom(42);
+        private int first;
+
+        @Setup
+        public void setUp(SessionBenchmark benchmark) {
+            first = benchmark.nextSlice.getAndIncrement() * GAMES_PER_THREAD;
+            if (first + GAMES_PER_THREAD > benchmark.games) {
+                throw new IllegalStateException("No slice of games left for another thread.");
+            }
+        }
+    }
+
+    /**
+     * Creates at least {@value #MIN_GAMES} games, and more if the threads need more slices.
+     */
+    @Setup
+    public void setUp(BenchmarkParams params) {
+        games = Math.max(MIN_GAMES, params.getThreads() * GAMES_PER_THREAD);
+        registry = new GameSessionRegistry(SpillStore.inMemory(), Duration.ofHours(1));
+        ids = new long[games];
+        emptyCells = new int[games][];
+        solutionValues = new int[games][];
+        int[][][][] puzzles = new int[PUZZLES][][][];
+        for (int i = 0; i < PUZZLES; i++) {
+            puzzles[i] = SudokuUtilities.generateSudokuMatrix(SudokuUtilities.SudokuLevel.MEDIUM);
+        }
+        for (int game = 0; game < games; game++) {
+            int[][][] matrix = puzzles[game % PUZZLES];
+            int[][] puzzle = new int[9][9];
+            int[][] solution = new int[9][9];
+            int empty = 0;
+            for (int row = 0; row < 9; row++) {
+                for (int col = 0; col < 9; col++) {
+                    puzzle[row][col] = matrix[row][col][0];
+                    solution[row][col] = matrix[row][col][1];
+                    if (puzzle[row][col] == 0) empty++;
+                }
+            }
+            emptyCells[game] = new int[empty];
+            solutionValues[game] = new int[empty];
+            empty = 0;
+            for (int cell = 0; cell < 81; cell++) {
+                if (puzzle[cell / 9][cell % 9] == 0) {
+                    emptyCells[game][empty] = cell;
+                    solutionValues[game][empty++] = solution[cell / 9][cell % 9];
+                }
+            }
+            ids[game] = registry.create(new SudokuBoard(puzzle, solution));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.close();
+    }
+
+    /**
+     * Places or clears the solution value of a random empty cell of a random game of the
+     * thread's slice, and returns the number of filled cells.
+     */
+    @Benchmark
+    public Integer move(Player player) throws IOException {
+        int game = player.first + player.random.nextInt(GAMES_PER_THREAD);
+        int empty = player.random.nextInt(emptyCells[game].length);
+        int cell = emptyCells[game][empty];
+        int value = player.random.nextBoolean() ? solutionValues[game][empty] : 0;
+        return registry.withSession(ids[game], session -> {
+            SudokuBoard board = session.getBoard();
+            board.setCellVal(cell / 9, cell % 9, value);
+            return board.getFilledCount();
+        });
+    }
+}
@@ -1,6 +1,7 @@
 package kth;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
@@ -10,38 +11,59 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import kth.io.MoveJournal;
+import kth.io.SudokuPuzzleLibrary;
+import kth.metrics.Metrics;
 import kth.model.*;
 import kth.view.BoardPane;
+import kth.view.BoardRenderer;
+import kth.view.CanvasBoardRenderer;
+import kth.view.TileBoardRenderer;
 import kth.controller.SudokuController;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 
 public class App extends Application {
 
+    // När klassen laddades, det vill säga när programmet startade
+    private static final long LAUNCH_TIME = System.nanoTime();
+
+    private MoveJournal journal;
+
     @Override
     public void start(Stage primaryStage) {
 
         SudokuUtilities.SudokuLevel difficultyLevel = SudokuUtilities.SudokuLevel.EASY;  // Du kan ändra baserat på användarval
 
 
-        int[][][] puzzleAndSolution = SudokuUtilities.generateSudokuMatrix(difficultyLevel);
-        int[][] puzzle = new int[9][9];
-        int[][] solution = new int[9][9];
+        int boxSize = boxSize();
+        int size = boxSize * boxSize;
 
-        // Separera pussel och lösning
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                puzzle[row][col] = puzzleAndSolution[row][col][0];  // Initialt pussel
-                solution[row][col] = puzzleAndSolution[row][col][1];  // Lösning
+        // Fortsätt det senaste spelet om det finns, annars genereras exakt ett pussel
+        journal = openJournal();
+        SudokuBoard recovered = journal != null ? journal.getRecoveredBoard() : null;
+        boolean resumed = recovered != null && recovered.getSize() == size;
+        SudokuBoard sudokuBoard = resumed ? recovered : newGame(difficultyLevel, boxSize);
+
+        BoardPane boardPane = new BoardPane(sudokuBoard.getInitialBoard(), createRenderer(size));
+        if (resumed) {
+            boardPane.updateBoard(sudokuBoard);  // Visa spelarens ifyllda rutor
+            for (int cell = 0; cell < size * size; cell++) {
+                if (journal.isRecoveredHint(cell)) {
+                    // Ledtrådar visas och låses som innan programmet avslutades
+                    boardPane.updateCell(cell / size, cell % size, sudokuBoard.getCellVal(cell / size, cell % size), true);
+                }
             }
         }
 
-        SudokuBoard sudokuBoard = new SudokuBoard(puzzle, solution);
-
-        BoardPane boardPane = new BoardPane(puzzle);
-
         SudokuController controller = new SudokuController(sudokuBoard, boardPane, difficultyLevel);
         boardPane.setController(controller);
-        controller.setDifficulty(difficultyLevel);
+        controller.setJournal(journal);
+        if (journal != null && !resumed) {
+            journal.start(sudokuBoard);  // Börja autospara det nya spelet; ett återställt spel fortsätter i journalen
+        }
 
         // Skapa knapparna till vänster
         VBox leftButtons = boardPane.createLeftButtons(controller);
@@ -56,12 +78,166 @@ public class App extends Application {
         root.setCenter(boardPane);  // Lägg brädet i mitten
         root.setRight(boardPane.getControlPanel());  // Lägg kontrollpanelen till höger
 
-        Scene scene = new Scene(root, 600, 600);
+        // Större bräden ritas så stora som pennanteckningarna kräver, så scenen får sin önskade storlek
+        Scene scene = size > SudokuUtilities.GRID_SIZE ? new Scene(root) : new Scene(root, 600, 600);
+        onFirstFrame(scene, () -> {
+            long timeToFirstFrame = System.nanoTime() - LAUNCH_TIME;
+            Metrics.recordStartup(timeToFirstFrame, boxSize, resumed);
+            startBackgroundWork(controller);
+            // Med --measure-startup skrivs tiden ut och programmet avslutas, så att starttiden kan följas
+            if (getParameters().getRaw().contains("--measure-startup")) {
+                System.out.printf("Första bilden efter %.1f ms%n", timeToFirstFrame / 1e6);
+                Platform.exit();
+            }
+        });
         primaryStage.setScene(scene);
         primaryStage.setTitle("Sudoku");
         primaryStage.show();
     }
 
+    /**
+     * Skapar ett nytt spel med ett genererat pussel av den givna nivån och storleken.
+     *
+     * @param level svårighetsnivån
+     * @param boxSize boxarnas storlek
+     * @return brädet med pusslet och dess lösning
+     */
+    private static SudokuBoard newGame(SudokuUtilities.SudokuLevel level, int boxSize) {
+        int size = boxSize * boxSize;
+        int[][][] puzzleAndSolution = SudokuUtilities.generateSudokuMatrix(level, boxSize);
+        int[][] puzzle = new int[size][size];
+        int[][] solution = new int[size][size];
+
+        // Separera pussel och lösning
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                puzzle[row][col] = puzzleAndSolution[row][col][0];  // Initialt pussel
+                solution[row][col] = puzzleAndSolution[row][col][1];  // Lösning
+            }
+        }
+        return new SudokuBoard(puzzle, solution);
+    }
+
+    /**
+     * Kör {@code action} en gång på JavaFX-tråden, direkt efter den första pulsen där scenen
+     * har lagts ut och lämnats till renderingen, det vill säga när den första bilden ritas.
+     *
+     * @param scene scenen som visas
+     * @param action det som ska köras efter den första bilden
+     */
+    private static void onFirstFrame(Scene scene, Runnable action) {
+        Runnable listener = new Runnable() {
+            private boolean done;
+
+            @Override
+            public void run() {
+                if (!done) {
+                    done = true;
+                    // Körs efter pulsen, och lyssnaren får inte tas bort medan pulsen pågår
+                    Platform.runLater(() -> {
+                        scene.removePostLayoutPulseListener(this);
+                        action.run();
+                    });
+                }
+            }
+        };
+        scene.addPostLayoutPulseListener(listener);
+    }
+
+    /**
+     * Startar det arbete som inte behövs för den första bilden på en bakgrundstråd:
+     * pusselbiblioteket öppnas och pusselpoolen börjar fyllas, i den ordningen så att
+     * poolen hämtar sina pussel ur biblioteket.
+     *
+     * @param controller kontrollern som får biblioteket och poolen
+     */
+    private static void startBackgroundWork(SudokuController controller) {
+        Thread thread = new Thread(() -> {
+            controller.setPuzzleLibrary(openPuzzleLibrary());
+            controller.prefillPuzzlePool();
+        }, "sudoku-startup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Läser brädets storlek från argumentet {@code --size=<n>} eller systemegenskapen
+     * {@code sudoku.size}, där n är 4, 9, 16 eller 25. Standard är 9x9.
+     *
+     * @return boxarnas storlek, roten ur brädets storlek
+     */
+    private int boxSize() {
+        String size = System.getProperty("sudoku.size", "9");
+        for (String arg : getParameters().getRaw()) {
+            if (arg.startsWith("--size=")) {
+                size = arg.substring("--size=".length());
+            }
+        }
+        try {
+            return SudokuGeometry.ofSize(Integer.parseInt(size)).getBoxSize();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ogiltig brädstorlek " + size + ", använder 9x9");
+            return SudokuUtilities.SECTION_SIZE;
+        }
+    }
+
+    /**
+     * Skapar renderaren för brädet. Med argumentet {@code --canvas} eller systemegenskapen
+     * {@code sudoku.renderer=canvas} ritas hela brädet på en {@code Canvas}, vilket passar
+     * stora bräden och alltid används för bräden större än 9x9; annars används en
+     * {@code Label} per ruta.
+     *
+     * @param size brädets storlek
+     * @return renderaren
+     */
+    private BoardRenderer createRenderer(int size) {
+        boolean canvas = size > SudokuUtilities.GRID_SIZE || getParameters().getRaw().contains("--canvas")
+                || "canvas".equals(System.getProperty("sudoku.renderer"));
+        return canvas ? new CanvasBoardRenderer(size) : new TileBoardRenderer(size);
+    }
+
+    /**
+     * Öppnar pusselbiblioteket som anges med systemegenskapen {@code sudoku.library}, om den finns.
+     *
+     * @return biblioteket, eller {@code null} om inget bibliotek används
+     */
+    private static SudokuPuzzleLibrary openPuzzleLibrary() {
+        String path = System.getProperty("sudoku.library");
+        if (path == null) {
+            return null;
+        }
+        try {
+            return SudokuPuzzleLibrary.open(Path.of(path));
+        } catch (IOException e) {
+            System.err.println("Kunde inte öppna pusselbiblioteket " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Öppnar autosparningen i katalogen som anges med systemegenskapen {@code sudoku.autosave},
+     * eller i {@code .sudoku} i hemkatalogen.
+     *
+     * @return journalen, eller {@code null} om den inte kunde öppnas
+     */
+    private static MoveJournal openJournal() {
+        String path = System.getProperty("sudoku.autosave",
+                Path.of(System.getProperty("user.home"), ".sudoku").toString());
+        try {
+            return MoveJournal.open(Path.of(path));
+        } catch (IOException e) {
+            System.err.println("Kunde inte öppna autosparningen " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void stop() throws IOException {
+        if (journal != null) {
+            journal.close();  // Skriv de sista dragen till disk
+        }
+    }
+
     public static void main(String[] args) {
         launch(args);  // Startar JavaFX-applikationen
     }
@@ -0,0 +1,196 @@
+package kth;
+
+import kth.io.SudokuLineIO;
+import kth.metrics.LatencyHistogram;
+import kth.model.SudokuSolver;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless entry point that solves every puzzle in a puzzle file, without starting the
+ * user interface. Puzzles are read in batches and solved on a {@code ForkJoinPool} where
+ * every worker thread keeps its own solver and latency histogram. At the end the tool
+ * prints the throughput, the p50/p99 latency per puzzle and the number of failures, and
+ * exits with status 1 if any puzzle failed.
+ * <p>
+ * Usage: {@code BatchSolver <puzzle file> [--threads N] [--unique]}. With {@code --unique}
+ * a puzzle also fails if it has more than one solution.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class BatchSolver {
+
+    private static final int CELL_COUNT = 81;
+    private static final int BATCH_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+    private final boolean requireUnique;
+    private final Queue<int[]> freeBatches = new ConcurrentLinkedQueue<>();
+    private final Queue<Worker> workers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Worker> worker = ThreadLocal.withInitial(this::newWorker);
+    private final AtomicLong malformed = new AtomicLong();
+
+    private BatchSolver(int parallelism, boolean requireUnique) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.maxInFlight = 2 * parallelism;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.requireUnique = requireUnique;
+    }
+
+    /**
+     * The solver state owned by one worker thread. Its counters are only written by that
+     * thread and read after all batches have completed.
+     */
+    private static final class Worker {
+        private final SudokuSolver solver = new SudokuSolver();
+        private final int[] puzzle = new int[CELL_COUNT];
+        private final int[] solution = new int[CELL_COUNT];
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long solved;
+        private long unsolvable;
+        private long ambiguous;
+    }
+
+    private Worker newWorker() {
+        Worker created = new Worker();
+        workers.add(created);
+        return created;
+    }
+
+    /**
+     * Reads the file and solves all of its puzzles.
+     */
+    private void run(Path file) throws IOException {
+        int[][] batch = {takeBatch()};
+        int[] fill = {0};
+        long start = System.nanoTime();
+
+        SudokuLineIO.forEach(file, (lineNumber, cells) -> {
+            System.arraycopy(cells, 0, batch[0], fill[0] * CELL_COUNT, CELL_COUNT);
+            if (++fill[0] == BATCH_SIZE) {
+                submit(batch[0], fill[0]);
+                batch[0] = takeBatch();
+                fill[0] = 0;
+            }
+        }, lineNumber -> malformed.incrementAndGet());
+        if (fill[0] > 0) {
+            submit(batch[0], fill[0]);
+        }
+
+        // Taking every permit waits for the last batches and makes their results visible
+        inFlight.acquireUninterruptibly(maxInFlight);
+        long elapsed = System.nanoTime() - start;
+        pool.shutdown();
+        report(elapsed);
+    }
+
+    private int[] takeBatch() {
+        int[] batch = freeBatches.poll();
+        return batch != null ? batch : new int[BATCH_SIZE * CELL_COUNT];
+    }
+
+    private void submit(int[] batch, int count) {
+        inFlight.acquireUninterruptibly();
+        pool.execute(() -> {
+            try {
+                solveBatch(batch, count);
+            } finally {
+                freeBatches.add(batch);
+                inFlight.release();
+            }
+        });
+    }
+
+    private void solveBatch(int[] batch, int count) {
+        Worker state = worker.get();
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(batch, i * CELL_COUNT, state.puzzle, 0, CELL_COUNT);
+            long start = System.nanoTime();
+            int solutions = requireUnique
+                    ? state.solver.countSolutions(state.puzzle, 2)
+                    : (state.solver.solve(state.puzzle, state.solution) ? 1 : 0);
+            state.latency.record(System.nanoTime() - start);
+
+            if (solutions == 0) {
+                state.unsolvable++;
+            } else if (solutions > 1) {
+                state.ambiguous++;
+            } else {
+                state.solved++;
+            }
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        LatencyHistogram latency = new LatencyHistogram();
+        long solved = 0;
+        long unsolvable = 0;
+        long ambiguous = 0;
+        for (Worker state : workers) {
+            latency.add(state.latency);
+            solved += state.solved;
+            unsolvable += state.unsolvable;
+            ambiguous += state.ambiguous;
+        }
+        long puzzles = solved + unsolvable + ambiguous + malformed.get();
+        long failures = puzzles - solved;
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.printf("puzzles:    %d (solved %d)%n", puzzles, solved);
+        System.out.printf("failures:   %d (malformed %d, unsolvable %d, ambiguous %d)%n",
+                failures, malformed.get(), unsolvable, ambiguous);
+        System.out.printf("elapsed:    %.3f s on %d threads%n", seconds, pool.getParallelism());
+        System.out.printf("throughput: %.0f puzzles/s%n", seconds > 0 ? puzzles / seconds : 0.0);
+        System.out.printf("latency:    p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3, latency.getMax() / 1e3);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Solves all puzzles in the file given on the command line.
+     *
+     * @param args the puzzle file, optionally followed by {@code --threads N} and {@code --unique}.
+     * @throws IOException if the puzzle file cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        Path file = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean unique = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i].equals("--threads")) {
+                    if (i + 1 == args.length) {
+                        file = null;  // --threads without a value
+                        break;
+                    }
+                    threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--unique")) {
+                    unique = true;
+                } else if (file == null) {
+                    file = Path.of(args[i]);
+                } else {
+                    file = null;
+                    break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            file = null;
+        }
+        if (file == null || threads < 1) {
+            System.err.println("Usage: BatchSolver <puzzle file> [--threads N] [--unique]");
+            System.exit(2);
+        }
+        new BatchSolver(threads, unique).run(file);
+    }
+}
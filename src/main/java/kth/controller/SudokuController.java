@@ -1,79 +1,183 @@
 package kth.controller;
 
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import kth.io.MoveJournal;
 import kth.io.SudokuFileIO;
+import kth.io.SudokuPuzzleLibrary;
+import kth.metrics.Metrics;
+import kth.model.BoardListener;
+import kth.model.HintEngine;
+import kth.model.MoveLog;
+import kth.model.PuzzlePool;
 import kth.model.SudokuBoard;
+import kth.model.SudokuHint;
 import kth.model.SudokuUtilities;
 import kth.view.BoardPane;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller class responsible for managing the interaction between the
  * Sudoku board model and the user interface (view).
- * It handles user input, updates the model, and reflects changes in the UI.
+ * It handles user input and updates the model; the view and the autosave journal
+ * follow the model as {@link BoardListener}s of the one board the controller keeps
+ * for its whole lifetime.
  *
  * @author Majd & Marvin
  * @version 1.0
  */
 public class SudokuController {
-    private SudokuBoard sudokuBoard;
+    private final SudokuBoard sudokuBoard;
     private final BoardPane boardPane;
     private int selectedNumber = 0;
     private final Random random = new Random();
     private int selectedRow = -1;
     private int selectedCol = -1;
-    private final SudokuUtilities.SudokuLevel  currentLevel;
+    private SudokuUtilities.SudokuLevel currentLevel;
+    private volatile SudokuPuzzleLibrary puzzleLibrary;
+    private final PuzzlePool puzzlePool;
+    private long requestedGames;  // Only used on the JavaFX application thread
+    private final MoveLog moveLog = new MoveLog();
+    private MoveJournal journal;
 
     /**
      * Constructs a SudokuController with the specified board, view, and difficulty level.
-     * Initializes the puzzle and solution based on the provided difficulty.
+     * The view is registered as a listener of the board, which the controller keeps for
+     * its whole lifetime; new games are loaded into it. The puzzle pool is created empty
+     * and only starts generating puzzles when {@link #prefillPuzzlePool()} is called, so
+     * that it does not compete with the start of the game.
      *
-     * @param board the SudokuBoard model
+     * @param board the SudokuBoard model, showing the same puzzle as the view
      * @param view the BoardPane UI component
      * @param level the difficulty level of the puzzle
      */
     public SudokuController(SudokuBoard board, BoardPane view, SudokuUtilities.SudokuLevel level) {
-        int[][][] puzzleAndSolution = SudokuUtilities.generateSudokuMatrix(level);
-        int[][] puzzle = new int[9][9];
-        int[][] solution = new int[9][9];
         this.currentLevel = level;
-
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                puzzle[row][col] = puzzleAndSolution[row][col][0];
-                solution[row][col] = puzzleAndSolution[row][col][1];
-            }
-        }
-
-        this.sudokuBoard = new SudokuBoard(puzzle, solution);
+        this.sudokuBoard = board;
         this.boardPane = view;
+        this.sudokuBoard.addBoardListener(view);
+        this.puzzlePool = new PuzzlePool(this::createPuzzle,
+                PuzzlePool.DEFAULT_LOW_WATERMARK, PuzzlePool.DEFAULT_HIGH_WATERMARK);
+    }
+
+    /**
+     * Starts filling the puzzle pool in the background. Until the pool has puzzles, new
+     * games are created by the pool's background thread as they are asked for.
+     */
+    public void prefillPuzzlePool() {
+        puzzlePool.prefill();
     }
 
     /**
      * Sets the difficulty level of the Sudoku puzzle.
-     * Generates a new puzzle and solution for the selected difficulty level.
+     * Starts a new game with a puzzle of the selected difficulty level, taken from the
+     * puzzle pool so that the puzzle is normally ready without waiting. If the pool has no
+     * puzzle of the level, the puzzle is created in the background and the game is loaded
+     * on the JavaFX application thread once it is ready; the current game stays playable
+     * meanwhile. Only the game asked for last is loaded.
      *
      * @param newDifficulty the new difficulty level
      */
     public void setDifficulty(SudokuUtilities.SudokuLevel newDifficulty) {
-        int[][][] puzzleAndSolution = SudokuUtilities.generateSudokuMatrix(newDifficulty);
-        int[][] newPuzzle = new int[9][9];
-        int[][] newSolution = new int[9][9];
+        long game = ++requestedGames;
+        CompletableFuture<int[][][]> puzzle = puzzlePool.takeAsync(newDifficulty);
+        if (puzzle.isDone() && !puzzle.isCompletedExceptionally()) {
+            startGame(newDifficulty, puzzle.join());
+            return;
+        }
+        puzzle.whenComplete((puzzleAndSolution, failure) -> Platform.runLater(() -> {
+            if (game != requestedGames) {
+                return;  // Another game was asked for meanwhile
+            }
+            if (puzzleAndSolution != null) {
+                startGame(newDifficulty, puzzleAndSolution);
+            } else if (!(failure instanceof CancellationException)) {
+                showError("New Game Failed", "No puzzle could be created: " + failure.getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Loads a new game with the given puzzle.
+     *
+     * @param level the difficulty level of the puzzle
+     * @param puzzleAndSolution the puzzle and its solution in the 3D matrix format used by {@code SudokuUtilities}
+     */
+    private void startGame(SudokuUtilities.SudokuLevel level, int[][][] puzzleAndSolution) {
+        this.currentLevel = level;
+        int size = sudokuBoard.getSize();
+        int[][] newPuzzle = new int[size][size];
+        int[][] newSolution = new int[size][size];
 
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
                 newPuzzle[row][col] = puzzleAndSolution[row][col][0];
                 newSolution[row][col] = puzzleAndSolution[row][col][1];
             }
         }
 
-        this.sudokuBoard = new SudokuBoard(newPuzzle, newSolution);
-        this.boardPane.initializeBoard(newPuzzle);
+        this.moveLog.clear();
+        this.sudokuBoard.loadPuzzle(newPuzzle, newSolution);
+    }
+
+    /**
+     * Sets the puzzle library that new games are drawn from. Levels without puzzles in
+     * the library are generated as before.
+     *
+     * @param puzzleLibrary the puzzle library, or {@code null} to always generate puzzles
+     */
+    public void setPuzzleLibrary(SudokuPuzzleLibrary puzzleLibrary) {
+        this.puzzleLibrary = puzzleLibrary;
+    }
+
+    /**
+     * Sets the journal that every move is autosaved to, replacing the previous journal as
+     * a listener of the board.
+     *
+     * @param journal the autosave journal, or {@code null} to not autosave
+     */
+    public void setJournal(MoveJournal journal) {
+        if (this.journal != null) {
+            sudokuBoard.removeBoardListener(this.journal);
+        }
+        this.journal = journal;
+        if (journal != null) {
+            sudokuBoard.addBoardListener(journal);
+        }
+    }
+
+    /**
+     * Returns the pool of ready puzzles that new games are taken from.
+     *
+     * @return the puzzle pool
+     */
+    public PuzzlePool getPuzzlePool() {
+        return puzzlePool;
+    }
+
+    /**
+     * Creates a puzzle for the puzzle pool, drawing it from the puzzle library when the
+     * library has puzzles of the level and generating it otherwise. The library only holds
+     * 9x9 puzzles, so puzzles for other board sizes are always generated. Called from the
+     * pool's background thread.
+     *
+     * @param level the difficulty level
+     * @return the puzzle and its solution in the 3D matrix format used by {@code SudokuUtilities}
+     */
+    private int[][][] createPuzzle(SudokuUtilities.SudokuLevel level) {
+        SudokuPuzzleLibrary library = puzzleLibrary;
+        int boxSize = sudokuBoard.getGeometry().getBoxSize();
+        if (library != null && boxSize == SudokuUtilities.SECTION_SIZE && library.size(level) > 0) {
+            return library.randomMatrix(level);
+        }
+        return SudokuUtilities.generateSudokuMatrix(level, boxSize);
     }
 
     /**
@@ -113,9 +217,9 @@ public class SudokuController {
     public void handleCellClick(int row, int col) {
         selectedRow = row;
         selectedCol = col;
+        boardPane.setSelection(row, col);
         if (selectedNumber != 0) {
-            sudokuBoard.setCellVal(row, col, selectedNumber);
-            boardPane.updateCell(row, col, selectedNumber, false);
+            applyMove(row, col, selectedNumber, false);
         }
     }
 
@@ -124,9 +228,80 @@ public class SudokuController {
      */
     public void clearSelectedCell() {
         if (selectedRow != -1 && selectedCol != -1) {
-            sudokuBoard.setCellVal(selectedRow, selectedCol, 0);
-            boardPane.updateCell(selectedRow, selectedCol, 0, false);
+            applyMove(selectedRow, selectedCol, 0, false);
+        }
+    }
+
+    /**
+     * Undoes the last move, if there is one.
+     */
+    public void undo() {
+        if (moveLog.canUndo()) {
+            int move = moveLog.undo();
+            showMove(MoveLog.cellOf(move), MoveLog.oldValueOf(move), BoardListener.UNDO);
+        }
+    }
+
+    /**
+     * Redoes the last undone move, if there is one.
+     */
+    public void redo() {
+        if (moveLog.canRedo()) {
+            int move = moveLog.redo();
+            showMove(MoveLog.cellOf(move), MoveLog.newValueOf(move),
+                    MoveLog.isHint(move) ? BoardListener.HINT : BoardListener.PLAYER);
+        }
+    }
+
+    /**
+     * Places a value in an editable cell, records the move and updates the changed cell in the view.
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @param value the value to place (0 to clear the cell)
+     * @param isHint whether the value comes from a hint
+     */
+    private void applyMove(int row, int col, int value, boolean isHint) {
+        int oldValue = sudokuBoard.getCellVal(row, col);
+        if (!sudokuBoard.isEditable(row, col) || oldValue == value) {
+            return;
         }
+        int cell = row * sudokuBoard.getSize() + col;
+        moveLog.record(MoveLog.encode(cell, oldValue, value, isHint));
+        showMove(cell, value, isHint ? BoardListener.HINT : BoardListener.PLAYER);
+    }
+
+    /**
+     * Sets a cell on the board. The listeners of the board update the view and the journal.
+     *
+     * @param cell the flat index of the cell
+     * @param value the value to set
+     * @param cause why the cell changes, one of the cause constants of {@link BoardListener}
+     */
+    private void showMove(int cell, int value, int cause) {
+        sudokuBoard.setCellVal(cell / sudokuBoard.getSize(), cell % sudokuBoard.getSize(), value, cause);
+    }
+
+    /**
+     * Shows or hides the candidates of the empty cells as pencil marks.
+     *
+     * @param show {@code true} to show the candidates
+     */
+    public void setShowCandidates(boolean show) {
+        boardPane.setShowCandidates(show);
+        boardPane.updateCandidates(sudokuBoard);
+    }
+
+    /**
+     * Returns the candidates of a cell, as maintained by the board.
+     *
+     * @param row the row index of the cell
+     * @param col the column index of the cell
+     * @return a bit mask where bit {@code d - 1} is set if digit {@code d} is a candidate,
+     *         or 0 if the cell holds a value
+     */
+    public int getCandidates(int row, int col) {
+        return sudokuBoard.getCandidates(row, col);
     }
 
     /**
@@ -144,7 +319,8 @@ public class SudokuController {
      * Otherwise, it checks the correctness of the partial solution.
      */
     public void checkSolution() {
-        sudokuBoard.printBoard();
+        Metrics.recordCheck(sudokuBoard.getFilledCount(), sudokuBoard.isSolved(),
+                sudokuBoard.checkPartialSolution(), sudokuBoard.hasConflicts());
         if (sudokuBoard.allCellsFilled()) {
             if (sudokuBoard.isSolved()) {
                 Alert solvedAlert = new Alert(Alert.AlertType.INFORMATION);
@@ -177,18 +353,16 @@ public class SudokuController {
     }
 
     /**
-     * Provides a hint by filling a randomly selected empty cell with the correct value.
+     * Provides a hint by filling in the next cell that follows logically from the board,
+     * or a randomly selected empty cell with the correct value if no such cell exists.
+     * Does nothing if the board is full.
      */
     public void giveHint() {
-        int row, col;
-        do {
-            row = random.nextInt(9);
-            col = random.nextInt(9);
-        } while (sudokuBoard.getCellVal(row, col) != 0);
-
-        int correctValue = sudokuBoard.getSolutionVal(row, col);
-        sudokuBoard.setCellVal(row, col, correctValue);
-        boardPane.updateCell(row, col, correctValue, true);
+        SudokuHint hint = HintEngine.findHint(sudokuBoard, random);
+        if (hint == null) {
+            return;
+        }
+        applyMove(hint.getRow(), hint.getCol(), hint.getValue(), true);
     }
 
     /**
@@ -206,7 +380,7 @@ public class SudokuController {
             try {
                 SudokuFileIO.serializeToFile(sudokuBoard, file);
             } catch (IOException e) {
-                e.printStackTrace();
+                showError("Save Failed", "The game could not be saved: " + e.getMessage());
             }
         }
     }
@@ -215,12 +389,13 @@ public class SudokuController {
      * Restarts the current Sudoku game by resetting the board to its initial state.
      */
     public void restartGame() {
+        moveLog.clear();
         sudokuBoard.resetToInitialBoard();
-        boardPane.updateBoard(sudokuBoard);
     }
 
     /**
-     * Loads a saved Sudoku game from a file.
+     * Loads a saved Sudoku game from a file. A game of another board size is not loaded
+     * and an error is shown instead.
      *
      * @param stage the current window (Stage) for the FileChooser dialog
      */
@@ -232,11 +407,33 @@ public class SudokuController {
         File file = fileChooser.showOpenDialog(stage);
         if (file != null) {
             try {
-                sudokuBoard = SudokuFileIO.deSerializeFromFile(file);
-                boardPane.updateBoard(sudokuBoard);
+                SudokuBoard loaded = SudokuFileIO.deSerializeFromFile(file);
+                if (loaded.getSize() != sudokuBoard.getSize()) {
+                    // The game is loaded in place, so it must be of the size of the board shown
+                    showError("Load Failed", "The game is a " + loaded.getSize() + "x" + loaded.getSize()
+                            + " game and cannot be loaded on this " + sudokuBoard.getSize() + "x"
+                            + sudokuBoard.getSize() + " board.");
+                    return;
+                }
+                moveLog.clear();
+                sudokuBoard.copyFrom(loaded);
             } catch (IOException | ClassNotFoundException e) {
-                e.printStackTrace();
+                showError("Load Failed", "The game could not be loaded: " + e.getMessage());
             }
         }
     }
+
+    /**
+     * Shows an error dialog.
+     *
+     * @param title the title of the dialog
+     * @param message the message to show
+     */
+    private void showError(String title, String message) {
+        Alert errorAlert = new Alert(Alert.AlertType.ERROR);
+        errorAlert.setTitle(title);
+        errorAlert.setHeaderText(null);
+        errorAlert.setContentText(message);
+        errorAlert.showAndWait();
+    }
 }
@@ -0,0 +1,418 @@
+package kth.io;
+
+import kth.model.BoardChangeSet;
+import kth.model.BoardListener;
+import kth.model.MoveLog;
+import kth.model.SudokuBoard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@code MoveJournal} class autosaves the game that is being played. The game is
+ * stored as a snapshot of the board and an append-only journal of the moves made since
+ * the snapshot, in a directory of their own:
+ * <pre>
+ *   autosave.snapshot   magic "SDKS", version, epoch, length, board in the format of {@code SudokuBoardCodec},
+ *                       then one bit per cell, in 8-byte words, set for the values placed by hints
+ *   autosave.journal    magic "SDKJ", version, epoch, then one 4-byte record per move
+ * </pre>
+ * A record holds a move packed by {@code MoveLog} in its upper 24 bits and a check byte,
+ * mixed from the move and the epoch, in its lowest 8 bits. Recovery replays records from
+ * the start of the journal until the end of the file or the first record that is torn,
+ * fails its check or does not fit the board. A journal with another epoch than the
+ * snapshot is left over from before the last compaction and is ignored. The board itself
+ * does not know which values were placed by hints, so the journal keeps track of them and
+ * restores them along with the board. Snapshots of version 1 hold no hint cells.
+ * <p>
+ * Appending a move only puts four bytes into a buffer. A background thread writes the
+ * buffer and forces it to disk every {@link #SYNC_INTERVAL_MILLIS} milliseconds, so one
+ * fsync covers all moves of that interval. Every {@link #COMPACT_THRESHOLD} moves, and
+ * whenever a new game starts, the board is encoded into a new snapshot, which is written
+ * to a temporary file and moved into place before the journal is reset.
+ * <p>
+ * As a {@link BoardListener} the journal appends every move made on a board it listens
+ * to, and starts a new snapshot whenever the whole board changes.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class MoveJournal implements Closeable, BoardListener {
+
+    public static final int SNAPSHOT_MAGIC = 0x53444B53;  // "SDKS"
+    public static final int JOURNAL_MAGIC = 0x53444B4A;   // "SDKJ"
+    public static final int VERSION = 1;
+    public static final int SNAPSHOT_VERSION = 2;
+    public static final int COMPACT_THRESHOLD = 1024;
+    public static final long SYNC_INTERVAL_MILLIS = 200;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 4;
+    private static final int SNAPSHOT_HEADER_SIZE = 20;
+
+    private final Path snapshotFile;
+    private final Path journalFile;
+    private final FileChannel journal;
+    private final ScheduledExecutorService writer;
+    private final SudokuBoard recoveredBoard;
+    private long[] recoveredHints;  // Set by recover() before the journal is returned
+
+    // Guarded by this: records not yet handed to the writer thread, and their epoch
+    private final ByteBuffer pending = ByteBuffer.allocate(4 * COMPACT_THRESHOLD * RECORD_SIZE);
+    private long epoch;
+    private int movesSinceSnapshot;
+    // Guarded by this: the cells whose value was placed by a hint, one bit per cell
+    private long[] hints = new long[0];
+
+    // The epoch of the journal file: guarded by this, changed only by the writer thread
+    private long fileEpoch;
+    // Only used by the writer thread
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(4 * COMPACT_THRESHOLD * RECORD_SIZE);
+
+    private volatile IOException failure;
+
+    private MoveJournal(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        this.snapshotFile = directory.resolve("autosave.snapshot");
+        this.journalFile = directory.resolve("autosave.journal");
+        this.journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            this.recoveredBoard = recover();
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "sudoku-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.writer = executor;
+        writer.scheduleWithFixedDelay(this::syncQuietly, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens the autosave in the given directory, creating the directory if needed, and
+     * restores the last game from it.
+     *
+     * @param directory the directory holding the snapshot and the journal.
+     * @return the opened journal.
+     * @throws IOException if the directory or the journal cannot be opened.
+     */
+    public static MoveJournal open(Path directory) throws IOException {
+        return new MoveJournal(directory);
+    }
+
+    /**
+     * Returns the game restored when the journal was opened.
+     *
+     * @return the restored board, or {@code null} if there was no valid autosave.
+     */
+    public SudokuBoard getRecoveredBoard() {
+        return recoveredBoard;
+    }
+
+    /**
+     * Returns whether the value of a cell of the restored game was placed by a hint.
+     *
+     * @param cell the flat index of the cell.
+     * @return {@code true} if the cell holds a hint.
+     */
+    public boolean isRecoveredHint(int cell) {
+        return recoveredHints != null && cell >>> 6 < recoveredHints.length
+                && (recoveredHints[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    /**
+     * Starts autosaving a new game: the board is written as a new snapshot in the
+     * background and the journal is reset. The game holds no hints yet.
+     *
+     * @param board the board of the new game.
+     */
+    public synchronized void start(SudokuBoard board) {
+        hints = new long[(board.getSize() * board.getSize() + 63) >>> 6];
+        compact(board);
+    }
+
+    /**
+     * Appends a move that has just been made on the board. The move is written to disk
+     * by the next group commit; every {@link #COMPACT_THRESHOLD} moves the board is
+     * compacted into a new snapshot.
+     *
+     * @param board the board after the move.
+     * @param move the move, packed by {@code MoveLog}.
+     */
+    public synchronized void append(SudokuBoard board, int move) {
+        trackHint(move);
+        if (++movesSinceSnapshot >= COMPACT_THRESHOLD || pending.remaining() < RECORD_SIZE) {
+            compact(board);  // The snapshot already contains the move
+            return;
+        }
+        pending.putInt(record(move, epoch));
+    }
+
+    /**
+     * Appends a move reported by the board, marked as a hint when a hint placed the value.
+     */
+    @Override
+    public void cellChanged(SudokuBoard board, int cell, int oldValue, int newValue, int cause) {
+        append(board, MoveLog.encode(cell, oldValue, newValue, cause == BoardListener.HINT));
+    }
+
+    /**
+     * Starts a new snapshot when the board is reset or a new game is loaded into it.
+     */
+    @Override
+    public void boardChanged(SudokuBoard board, BoardChangeSet changes) {
+        start(board);
+    }
+
+    /**
+     * Writes all appended moves to the journal and forces them to disk, waiting until done.
+     *
+     * @throws IOException if an earlier write failed or the journal cannot be written.
+     */
+    public void sync() throws IOException {
+        try {
+            writer.submit(this::syncQuietly).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while syncing the journal.", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes the remaining moves, stops the writer thread and closes the journal.
+     *
+     * @throws IOException if a write failed or the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!writer.isShutdown()) {
+                sync();
+            }
+        } finally {
+            writer.shutdownNow();
+            journal.close();
+        }
+    }
+
+    /**
+     * Records whether the cell of a move now holds a value placed by a hint. Called with
+     * the lock held, or during recovery.
+     */
+    private void trackHint(int move) {
+        int cell = MoveLog.cellOf(move);
+        if (cell >>> 6 >= hints.length) {
+            hints = Arrays.copyOf(hints, (cell >>> 6) + 1);
+        }
+        if (MoveLog.isHint(move) && MoveLog.newValueOf(move) != 0) {
+            hints[cell >>> 6] |= 1L << cell;
+        } else {
+            hints[cell >>> 6] &= ~(1L << cell);
+        }
+    }
+
+    /**
+     * Hands a snapshot of the board, its hint cells and the moves it covers to the writer
+     * thread and starts a new epoch. Called with the lock held.
+     */
+    private void compact(SudokuBoard board) {
+        byte[] snapshot = SudokuBoardCodec.encode(board);
+        long[] hintWords = Arrays.copyOf(hints, (board.getSize() * board.getSize() + 63) >>> 6);
+        byte[] covered = new byte[pending.position()];
+        pending.flip().get(covered);
+        pending.clear();
+        long newEpoch = ++epoch;
+        movesSinceSnapshot = 0;
+        writer.execute(() -> {
+            try {
+                writeRecords(covered);
+                writeSnapshot(snapshot, hintWords, newEpoch);
+                resetJournal(newEpoch);
+            } catch (IOException e) {
+                failure = e;
+            }
+            syncQuietly();
+        });
+    }
+
+    /**
+     * Writes the pending moves of the current journal file and forces them to disk.
+     * Runs on the writer thread.
+     */
+    private void syncQuietly() {
+        synchronized (this) {
+            // Moves of a newer epoch wait until their compaction has reset the journal file
+            if (epoch != fileEpoch || pending.position() == 0) {
+                return;
+            }
+            pending.flip();
+            writeBuffer.clear();
+            writeBuffer.put(pending);
+            pending.clear();
+        }
+        try {
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining()) {
+                journal.write(writeBuffer, journal.size());
+            }
+            journal.force(false);
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void writeRecords(byte[] records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records);
+        while (buffer.hasRemaining()) {
+            journal.write(buffer, journal.size());
+        }
+    }
+
+    private void writeSnapshot(byte[] board, long[] hintWords, long snapshotEpoch) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE + board.length + hintWords.length * Long.BYTES);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(snapshotEpoch).putInt(board.length).put(board);
+        for (long word : hintWords) {
+            buffer.putLong(word);
+        }
+        buffer.flip();
+
+        Path temp = snapshotFile.resolveSibling(snapshotFile.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        try {
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void resetJournal(long journalEpoch) throws IOException {
+        journal.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(JOURNAL_MAGIC).putInt(VERSION).putLong(journalEpoch);
+        header.flip();
+        while (header.hasRemaining()) {
+            journal.write(header, HEADER_SIZE - header.remaining());
+        }
+        journal.force(false);
+        synchronized (this) {
+            fileEpoch = journalEpoch;
+        }
+    }
+
+    /**
+     * Loads the snapshot and replays the valid records of the journal, keeping track of
+     * the cells holding hints. The journal is truncated after the last valid record, so
+     * that new moves follow it directly.
+     */
+    private SudokuBoard recover() throws IOException {
+        ByteBuffer snapshot;
+        try {
+            snapshot = ByteBuffer.wrap(Files.readAllBytes(snapshotFile));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (snapshot.remaining() < SNAPSHOT_HEADER_SIZE || snapshot.getInt() != SNAPSHOT_MAGIC) {
+            return null;
+        }
+        int version = snapshot.getInt();
+        if (version != 1 && version != SNAPSHOT_VERSION) {
+            return null;
+        }
+        long snapshotEpoch = snapshot.getLong();
+        int length = snapshot.getInt();
+        if (version == 1 ? length != snapshot.remaining() : length > snapshot.remaining()) {
+            return null;
+        }
+        SudokuBoard board;
+        try {
+            board = SudokuBoardCodec.decode(snapshot.slice(snapshot.position(), length));
+        } catch (IOException e) {
+            return null;  // A damaged snapshot means there is no game to restore
+        }
+        snapshot.position(snapshot.position() + length);
+        hints = new long[(board.getSize() * board.getSize() + 63) >>> 6];
+        if (version == SNAPSHOT_VERSION) {
+            if (snapshot.remaining() != hints.length * Long.BYTES) {
+                return null;
+            }
+            for (int word = 0; word < hints.length; word++) {
+                hints[word] = snapshot.getLong();
+            }
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((int) Math.min(journal.size(), Integer.MAX_VALUE));
+        while (data.hasRemaining() && journal.read(data, data.position()) > 0) {
+            // Read the whole journal
+        }
+        data.flip();
+        if (data.remaining() < HEADER_SIZE || data.getInt() != JOURNAL_MAGIC || data.getInt() != VERSION
+                || data.getLong() != snapshotEpoch) {
+            // The journal belongs to an older snapshot; start a fresh one for this epoch
+            epoch = snapshotEpoch;
+            resetJournal(snapshotEpoch);
+            recoveredHints = hints.clone();
+            return board;
+        }
+        while (data.remaining() >= RECORD_SIZE) {
+            int record = data.getInt();
+            int move = record >>> 8;
+            int cell = MoveLog.cellOf(move);
+            int size = board.getSize();
+            int row = cell / size;
+            int col = cell % size;
+            if (record != record(move, snapshotEpoch) || cell >= size * size
+                    || !board.isEditable(row, col) || board.getCellVal(row, col) != MoveLog.oldValueOf(move)
+                    || MoveLog.newValueOf(move) == MoveLog.oldValueOf(move) || MoveLog.newValueOf(move) > size) {
+                data.position(data.position() - RECORD_SIZE);
+                break;
+            }
+            board.setCellVal(row, col, MoveLog.newValueOf(move));
+            trackHint(move);
+        }
+        recoveredHints = hints.clone();
+        journal.truncate(data.position());
+        epoch = snapshotEpoch;
+        fileEpoch = snapshotEpoch;
+        return board;
+    }
+
+    /**
+     * Builds the journal record of a move: the move in the upper 24 bits and a check
+     * byte in the lowest 8 bits.
+     */
+    private static int record(int move, long recordEpoch) {
+        int payload = move & 0xFFFFFF;
+        int mixed = (payload ^ (int) recordEpoch ^ (int) (recordEpoch >>> 32)) * 0x9E3779B1;
+        return payload << 8 | mixed >>> 24;
+    }
+}
@@ -0,0 +1,284 @@
+package kth.io;
+
+import kth.model.SudokuBoard;
+import kth.model.SudokuGeometry;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The {@code SudokuBoardCodec} class encodes {@code SudokuBoard} objects in a compact,
+ * versioned binary format and decodes them again. The format is written by hand, so it
+ * needs no reflection and does not depend on the fields of the model classes.
+ * <p>
+ * Layout of version 2 (multi-byte values are big-endian):
+ * <pre>
+ *   magic      4 bytes   'S' 'D' 'K' 'B'
+ *   version    1 byte
+ *   flags      1 byte    bit 0: an explicit initial grid follows the editability mask
+ *   box size   1 byte    3 for the standard 9x9 board
+ *   current    grid      current values
+ *   solution   grid      solution values
+ *   editable   mask      one bit per cell, bit (cell % 8) of byte (cell / 8)
+ *   initial    grid      only if flag bit 0 is set
+ *   crc        4 bytes   CRC-32 of all preceding bytes
+ * </pre>
+ * A grid holds two cells per byte, high nibble first, on boards up to 9x9, and one cell
+ * per byte on larger boards, whose values do not fit in a nibble. The initial grid is
+ * normally not stored, because the givens are exactly the solution values of the cells
+ * that are not editable. A 9x9 board encodes to 104 bytes.
+ * <p>
+ * Version 1 is the same without the box size byte and always holds a 9x9 board; it is
+ * still read.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class SudokuBoardCodec {
+
+    public static final int MAGIC = 0x53444B42;  // "SDKB"
+    public static final int VERSION = 2;
+    public static final int MAX_ENCODED_SIZE = maxEncodedSize(SudokuGeometry.of(SudokuGeometry.MAX_BOX_SIZE));
+
+    private static final int FLAG_EXPLICIT_INITIAL = 1;
+    private static final int HEADER_SIZE = 4 + 1 + 1 + 1;
+
+    /**
+     * Returns the number of bytes a board of the given geometry encodes to at most.
+     *
+     * @param geometry the geometry of the board.
+     * @return the largest encoded size.
+     */
+    public static int maxEncodedSize(SudokuGeometry geometry) {
+        return HEADER_SIZE + 3 * gridBytes(geometry) + (geometry.getCellCount() + 7) / 8 + 4;
+    }
+
+    /**
+     * Encodes the given board into a new byte array.
+     *
+     * @param board the board to encode.
+     * @return the encoded board.
+     */
+    public static byte[] encode(SudokuBoard board) {
+        ByteBuffer buffer = ByteBuffer.allocate(maxEncodedSize(board.getGeometry()));
+        encode(board, buffer);
+        byte[] data = new byte[buffer.position()];
+        buffer.flip().get(data);
+        return data;
+    }
+
+    /**
+     * Encodes the given board at the current position of the buffer.
+     *
+     * @param board the board to encode.
+     * @param out the buffer receiving the encoded board; needs at least {@link #maxEncodedSize}
+     *            bytes left for the geometry of the board.
+     * @return the number of bytes written.
+     */
+    public static int encode(SudokuBoard board, ByteBuffer out) {
+        SudokuGeometry geometry = board.getGeometry();
+        int cellCount = geometry.getCellCount();
+        int start = out.position();
+        boolean explicitInitial = !givensMatchSolution(board);
+
+        out.putInt(MAGIC);
+        out.put((byte) VERSION);
+        out.put((byte) (explicitInitial ? FLAG_EXPLICIT_INITIAL : 0));
+        out.put((byte) geometry.getBoxSize());
+        writeGrid(out, geometry, board::getCellVal);
+        writeGrid(out, geometry, board::getSolutionVal);
+        for (int cell = 0; cell < cellCount; cell += 8) {
+            int bits = 0;
+            for (int bit = 0; bit < 8 && cell + bit < cellCount; bit++) {
+                int index = cell + bit;
+                if (board.isEditable(geometry.rowOf(index), geometry.colOf(index))) {
+                    bits |= 1 << bit;
+                }
+            }
+            out.put((byte) bits);
+        }
+        if (explicitInitial) {
+            writeGrid(out, geometry, board::getInitialVal);
+        }
+        out.putInt((int) crc(out, start, out.position()));
+        return out.position() - start;
+    }
+
+    /**
+     * Decodes a board from the given bytes.
+     *
+     * @param data the encoded board.
+     * @return the decoded board.
+     * @throws IOException if the data is not a valid encoded board.
+     */
+    public static SudokuBoard decode(byte[] data) throws IOException {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * Decodes a board starting at the current position of the buffer and advances the
+     * position past the encoded board.
+     *
+     * @param in the buffer holding the encoded board.
+     * @return the decoded board.
+     * @throws IOException if the data is not a valid encoded board.
+     */
+    public static SudokuBoard decode(ByteBuffer in) throws IOException {
+        int start = in.position();
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+            throw new IOException("Not a Sudoku board.");
+        }
+        int version = in.get();
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported Sudoku board version: " + version);
+        }
+        boolean explicitInitial = (in.get() & FLAG_EXPLICIT_INITIAL) != 0;
+        SudokuGeometry geometry;
+        try {
+            geometry = version == 1 ? SudokuGeometry.STANDARD : SudokuGeometry.of(in.get());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid Sudoku board: " + e.getMessage());
+        }
+        int size = geometry.getSize();
+        int cellCount = geometry.getCellCount();
+        if (in.remaining() < 2 * gridBytes(geometry) + (cellCount + 7) / 8 + 4) {
+            throw new IOException("Truncated Sudoku board.");
+        }
+
+        int[][] current = readGrid(in, geometry);
+        int[][] solution = readGrid(in, geometry);
+        boolean[] editable = new boolean[cellCount];
+        for (int cell = 0; cell < cellCount; cell += 8) {
+            int bits = in.get();
+            for (int bit = 0; bit < 8 && cell + bit < cellCount; bit++) {
+                editable[cell + bit] = (bits & (1 << bit)) != 0;
+            }
+        }
+        int[][] initial;
+        if (explicitInitial) {
+            if (in.remaining() < gridBytes(geometry)) {
+                throw new IOException("Truncated Sudoku board.");
+            }
+            initial = readGrid(in, geometry);
+        } else {
+            initial = new int[size][size];
+            for (int cell = 0; cell < cellCount; cell++) {
+                if (!editable[cell]) {
+                    initial[cell / size][cell % size] = solution[cell / size][cell % size];
+                }
+            }
+        }
+
+        if (in.remaining() < 4 || (int) crc(in, start, in.position()) != in.getInt()) {
+            throw new IOException("Sudoku board checksum mismatch.");
+        }
+
+        SudokuBoard board;
+        try {
+            board = new SudokuBoard(initial, solution);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid Sudoku board: " + e.getMessage());
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            if (board.isEditable(row, col) != editable[cell]) {
+                throw new IOException("Invalid Sudoku board: editability does not match the initial puzzle.");
+            }
+            if (editable[cell]) {
+                board.setCellVal(row, col, current[row][col]);
+            } else if (current[row][col] != initial[row][col]) {
+                throw new IOException("Invalid Sudoku board: a given cell was changed.");
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Returns whether every given of the board equals its solution value and every
+     * non-editable cell is a given, so that the initial grid can be left out.
+     */
+    private static boolean givensMatchSolution(SudokuBoard board) {
+        for (int row = 0; row < board.getSize(); row++) {
+            for (int col = 0; col < board.getSize(); col++) {
+                int given = board.getInitialVal(row, col);
+                if (board.isEditable(row, col) ? given != 0 : given != board.getSolutionVal(row, col)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads one value of a board by row and column.
+     */
+    @FunctionalInterface
+    private interface CellReader {
+        int valueAt(int row, int col);
+    }
+
+    /**
+     * Returns whether the values of a board of the given geometry are packed two per byte.
+     */
+    private static boolean nibbles(SudokuGeometry geometry) {
+        return geometry.getSize() <= 0xF;
+    }
+
+    private static int gridBytes(SudokuGeometry geometry) {
+        return nibbles(geometry) ? (geometry.getCellCount() + 1) / 2 : geometry.getCellCount();
+    }
+
+    private static void writeGrid(ByteBuffer out, SudokuGeometry geometry, CellReader reader) {
+        int cellCount = geometry.getCellCount();
+        if (!nibbles(geometry)) {
+            for (int cell = 0; cell < cellCount; cell++) {
+                out.put((byte) reader.valueAt(geometry.rowOf(cell), geometry.colOf(cell)));
+            }
+            return;
+        }
+        for (int cell = 0; cell < cellCount; cell += 2) {
+            int high = reader.valueAt(geometry.rowOf(cell), geometry.colOf(cell));
+            // The padding cell after the last one is written as 0
+            int low = cell + 1 < cellCount ? reader.valueAt(geometry.rowOf(cell + 1), geometry.colOf(cell + 1)) : 0;
+            out.put((byte) ((high << 4) | low));
+        }
+    }
+
+    private static int[][] readGrid(ByteBuffer in, SudokuGeometry geometry) throws IOException {
+        int size = geometry.getSize();
+        int cellCount = geometry.getCellCount();
+        int[][] grid = new int[size][size];
+        if (!nibbles(geometry)) {
+            for (int cell = 0; cell < cellCount; cell++) {
+                grid[cell / size][cell % size] = checkValue(in.get() & 0xFF, size);
+            }
+            return grid;
+        }
+        for (int cell = 0; cell < cellCount; cell += 2) {
+            int packed = in.get() & 0xFF;
+            grid[cell / size][cell % size] = checkValue(packed >>> 4, size);
+            if (cell + 1 < cellCount) {
+                grid[(cell + 1) / size][(cell + 1) % size] = checkValue(packed & 0xF, size);
+            }
+        }
+        return grid;
+    }
+
+    private static int checkValue(int value, int size) throws IOException {
+        if (value > size) {
+            throw new IOException("Invalid cell value: " + value);
+        }
+        return value;
+    }
+
+    /**
+     * Computes the CRC-32 of the bytes between two absolute positions of the buffer.
+     */
+    private static long crc(ByteBuffer buffer, int from, int to) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().limit(to).position(from));
+        return crc.getValue();
+    }
+}
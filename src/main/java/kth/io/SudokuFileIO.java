@@ -1,18 +1,37 @@
 package kth.io;
 
+import kth.metrics.Counter;
+import kth.metrics.GameIOEvent;
+import kth.metrics.LatencyHistogram;
+import kth.metrics.Metrics;
 import kth.model.SudokuBoard;
 import java.io.*;
+import java.nio.file.Files;
 
 /**
  * The {@code SudokuFileIO} class provides methods for serializing and deserializing
  * {@code SudokuBoard} objects to and from files. This allows saving the current state
  * of the game and loading it back from a file.
+ * <p>
+ * Boards are written in the compact binary format of {@code SudokuBoardCodec}. Files
+ * written with Java serialization by earlier versions of the game can still be read.
+ * <p>
+ * Saving and loading are timed in the {@code save.latency} and {@code load.latency}
+ * histograms of {@link Metrics}, the bytes and failures are counted, and every operation
+ * is reported as a {@link GameIOEvent}.
  *
  * @author Majd & Marvin
  * @version 1.0
  */
 public class SudokuFileIO {
 
+    private static final LatencyHistogram SAVE_LATENCY = Metrics.histogram("save.latency");
+    private static final Counter SAVE_BYTES = Metrics.counter("save.bytes");
+    private static final Counter SAVE_FAILURES = Metrics.counter("save.failures");
+    private static final LatencyHistogram LOAD_LATENCY = Metrics.histogram("load.latency");
+    private static final Counter LOAD_BYTES = Metrics.counter("load.bytes");
+    private static final Counter LOAD_FAILURES = Metrics.counter("load.failures");
+
     /**
      * Serializes the given {@code SudokuBoard} object and saves it to the specified file.
      * This allows saving the current game state to be loaded later.
@@ -22,8 +41,18 @@ public class SudokuFileIO {
      * @throws IOException if an I/O error occurs while writing to the file.
      */
     public static void serializeToFile(SudokuBoard board, File file) throws IOException {
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file))) {
-            oos.writeObject(board);
+        GameIOEvent event = new GameIOEvent();
+        event.begin();
+        long start = Metrics.start();
+        byte[] data = SudokuBoardCodec.encode(board);
+        boolean succeeded = false;
+        try {
+            Files.write(file.toPath(), data);
+            succeeded = true;
+        } finally {
+            Metrics.stop(SAVE_LATENCY, start);
+            Metrics.count(succeeded ? SAVE_BYTES : SAVE_FAILURES, succeeded ? data.length : 1);
+            commit(event, "save", file, succeeded ? data.length : 0, succeeded);
         }
     }
 
@@ -37,8 +66,50 @@ public class SudokuFileIO {
      * @throws ClassNotFoundException if the {@code SudokuBoard} class cannot be found during deserialization.
      */
     public static SudokuBoard deSerializeFromFile(File file) throws IOException, ClassNotFoundException {
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(file))) {
-            return (SudokuBoard) ois.readObject();
+        GameIOEvent event = new GameIOEvent();
+        event.begin();
+        long start = Metrics.start();
+        long bytes = 0;
+        boolean succeeded = false;
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            bytes = data.length;
+            SudokuBoard board;
+            if (isJavaSerialization(data)) {
+                try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                    board = (SudokuBoard) ois.readObject();
+                }
+            } else {
+                board = SudokuBoardCodec.decode(data);
+            }
+            succeeded = true;
+            return board;
+        } finally {
+            Metrics.stop(LOAD_LATENCY, start);
+            Metrics.count(succeeded ? LOAD_BYTES : LOAD_FAILURES, succeeded ? bytes : 1);
+            commit(event, "load", file, bytes, succeeded);
         }
     }
+
+    private static void commit(GameIOEvent event, String operation, File file, long bytes, boolean succeeded) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.path = file.getPath();
+            event.bytes = bytes;
+            event.succeeded = succeeded;
+            event.commit();
+        }
+    }
+
+    /**
+     * Checks whether the data starts with the stream header written by {@code ObjectOutputStream}.
+     *
+     * @param data the contents of a saved game.
+     * @return {@code true} if the data was written with Java serialization, {@code false} otherwise.
+     */
+    private static boolean isJavaSerialization(byte[] data) {
+        return data.length >= 2
+                && (data[0] & 0xFF) == (ObjectStreamConstants.STREAM_MAGIC >>> 8 & 0xFF)
+                && (data[1] & 0xFF) == (ObjectStreamConstants.STREAM_MAGIC & 0xFF);
+    }
 }
@@ -0,0 +1,443 @@
+package kth.io;
+
+import kth.model.SudokuSolver;
+import kth.model.SudokuUtilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The {@code SudokuLineIO} class reads and writes files in the common one-puzzle-per-line
+ * format: 81 characters per line in row-major order, with '.' or '0' for empty cells.
+ * Whitespace before the puzzle is skipped, and anything after the first whitespace or comma
+ * following it is ignored, as are empty lines and lines starting with '#'. Files whose
+ * content is gzip-compressed are decompressed transparently, and output files whose name
+ * ends with {@code .gz} are compressed.
+ * <p>
+ * Files are processed as streams of fixed-size batches of primitive cells, so files of
+ * tens of millions of puzzles are handled with bounded memory.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class SudokuLineIO {
+
+    public static final int BATCH_SIZE = 4096;
+
+    private static final int CELL_COUNT = SudokuUtilities.GRID_SIZE * SudokuUtilities.GRID_SIZE;
+    private static final char BLANK = '.';
+
+    private static final byte VALID = 0;
+    private static final byte MALFORMED = 1;
+    private static final byte UNSOLVABLE = 2;
+    private static final byte AMBIGUOUS = 3;
+
+    /**
+     * Receives the puzzles of a file one by one.
+     */
+    @FunctionalInterface
+    public interface PuzzleConsumer {
+
+        /**
+         * Accepts one puzzle. The array is reused for the next puzzle and must not be kept.
+         *
+         * @param lineNumber the line of the file the puzzle was read from, starting at 1.
+         * @param cells the 81 cells of the puzzle (0 represents an empty cell).
+         */
+        void accept(long lineNumber, int[] cells);
+    }
+
+    /**
+     * Opens a puzzle file for reading, decompressing it if it is gzip-compressed.
+     *
+     * @param file the file to read.
+     * @return a reader for the (decompressed) contents of the file.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static Reader openReader(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == (GZIPInputStream.GZIP_MAGIC & 0xFF) && second == (GZIPInputStream.GZIP_MAGIC >>> 8)) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new InputStreamReader(in, StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Opens a puzzle file for writing, compressing it if the file name ends with {@code .gz}.
+     *
+     * @param file the file to create or overwrite.
+     * @return a buffered writer for the file.
+     * @throws IOException if the file cannot be created.
+     */
+    public static Writer openWriter(Path file) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        if (file.getFileName().toString().endsWith(".gz")) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16);
+    }
+
+    /**
+     * Reads every puzzle of a file in order and passes it to the consumer.
+     *
+     * @param file the file to read.
+     * @param consumer the consumer receiving the puzzles.
+     * @return the number of puzzles read.
+     * @throws IOException if the file cannot be read or contains a malformed line.
+     */
+    public static long forEach(Path file, PuzzleConsumer consumer) throws IOException {
+        return forEach(file, consumer, null);
+    }
+
+    /**
+     * Reads every puzzle of a file in order and passes it to the consumer, reporting
+     * malformed lines to {@code onMalformed} instead of failing.
+     *
+     * @param file the file to read.
+     * @param consumer the consumer receiving the puzzles.
+     * @param onMalformed receives the line number of every malformed line, or {@code null}
+     *                    to fail on the first malformed line.
+     * @return the number of puzzles read, not counting malformed lines.
+     * @throws IOException if the file cannot be read, or contains a malformed line and
+     *                     {@code onMalformed} is {@code null}.
+     */
+    public static long forEach(Path file, PuzzleConsumer consumer, LongConsumer onMalformed) throws IOException {
+        char[] line = new char[CELL_COUNT];
+        int[] cells = new int[CELL_COUNT];
+        long count = 0;
+        try (LineSource source = new LineSource(openReader(file))) {
+            int length;
+            while ((length = source.next(line, 0)) >= 0) {
+                try {
+                    SudokuUtilities.convertLineToCells(line, 0, length, cells);
+                } catch (IllegalArgumentException e) {
+                    if (onMalformed == null) {
+                        throw new IOException("Line " + source.lineNumber() + ": " + e.getMessage());
+                    }
+                    onMalformed.accept(source.lineNumber());
+                    continue;
+                }
+                consumer.accept(source.lineNumber(), cells);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes one puzzle as a line.
+     *
+     * @param out the writer to write to.
+     * @param cells the 81 cells of the puzzle (0 represents an empty cell).
+     * @throws IOException if an I/O error occurs while writing.
+     */
+    public static void writePuzzle(Writer out, int[] cells) throws IOException {
+        char[] line = new char[CELL_COUNT + 1];
+        SudokuUtilities.convertCellsToLine(cells, BLANK, line);
+        line[CELL_COUNT] = '\n';
+        out.write(line);
+    }
+
+    /**
+     * Writes every puzzle of a library to a line file, in the order of the library.
+     *
+     * @param library the library to export.
+     * @param out the file to create or overwrite.
+     * @return the number of puzzles written.
+     * @throws IOException if an I/O error occurs while writing.
+     */
+    public static long export(SudokuPuzzleLibrary library, Path out) throws IOException {
+        int[] puzzle = new int[CELL_COUNT];
+        int[] solution = new int[CELL_COUNT];
+        char[] line = new char[CELL_COUNT + 1];
+        line[CELL_COUNT] = '\n';
+        try (Writer writer = openWriter(out)) {
+            for (long index = 0; index < library.size(); index++) {
+                library.readPuzzle(index, puzzle, solution);
+                SudokuUtilities.convertCellsToLine(puzzle, BLANK, line);
+                writer.write(line);
+            }
+        }
+        return library.size();
+    }
+
+    /**
+     * Reads a puzzle file and checks every puzzle in parallel for being well-formed and
+     * having exactly one solution. The valid puzzles are written, in input order and with
+     * '.' for empty cells, to {@code out}. At most two batches per thread are held in
+     * memory at any time.
+     *
+     * @param in the file to read.
+     * @param out the file receiving the valid puzzles, or {@code null} to only count them.
+     * @param parallelism the number of threads validating puzzles.
+     * @return the counts of valid and rejected puzzles.
+     * @throws IOException if an I/O error occurs while reading or writing.
+     */
+    public static Summary validate(Path in, Path out, int parallelism) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "sudoku-validate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<Batch>> inFlight = new ArrayDeque<>();
+        ArrayDeque<Batch> free = new ArrayDeque<>();
+        long[] counts = new long[4];
+
+        try (LineSource source = new LineSource(openReader(in));
+             Writer writer = out == null ? Writer.nullWriter() : openWriter(out)) {
+            boolean more = true;
+            while (more || !inFlight.isEmpty()) {
+                if (more && inFlight.size() < 2 * parallelism) {
+                    Batch batch = free.isEmpty() ? new Batch() : free.pop();
+                    more = batch.fill(source);
+                    if (batch.count > 0) {
+                        inFlight.add(workers.submit(batch::validate, batch));
+                    }
+                } else {
+                    Batch batch = await(inFlight.poll());
+                    batch.writeValid(writer, counts);
+                    free.push(batch);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return new Summary(counts[VALID], counts[MALFORMED], counts[UNSOLVABLE], counts[AMBIGUOUS]);
+    }
+
+    private static Batch await(Future<Batch> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while validating puzzles.", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Validating puzzles failed.", e.getCause());
+        }
+    }
+
+    /**
+     * A fixed-size group of lines that is read, validated and written as a unit. The
+     * characters of every line are kept in one shared array instead of a string per line.
+     */
+    private static final class Batch {
+        private static final ThreadLocal<SudokuSolver> solver = ThreadLocal.withInitial(SudokuSolver::new);
+        private static final ThreadLocal<int[]> cells = ThreadLocal.withInitial(() -> new int[CELL_COUNT]);
+
+        private final char[] chars = new char[BATCH_SIZE * CELL_COUNT];
+        private final int[] lengths = new int[BATCH_SIZE];
+        private final byte[] status = new byte[BATCH_SIZE];
+        private int count;
+
+        /**
+         * Reads up to {@link #BATCH_SIZE} lines.
+         *
+         * @return {@code false} if the end of the input was reached.
+         */
+        boolean fill(LineSource source) throws IOException {
+            count = 0;
+            while (count < BATCH_SIZE) {
+                int length = source.next(chars, count * CELL_COUNT);
+                if (length < 0) {
+                    return false;
+                }
+                lengths[count++] = length;
+            }
+            return true;
+        }
+
+        void validate() {
+            SudokuSolver solver = Batch.solver.get();
+            int[] cells = Batch.cells.get();
+            for (int i = 0; i < count; i++) {
+                try {
+                    SudokuUtilities.convertLineToCells(chars, i * CELL_COUNT, lengths[i], cells);
+                } catch (IllegalArgumentException e) {
+                    status[i] = MALFORMED;
+                    continue;
+                }
+                int solutions = solver.countSolutions(cells, 2);
+                status[i] = solutions == 1 ? VALID : solutions == 0 ? UNSOLVABLE : AMBIGUOUS;
+                if (solutions == 1) {
+                    for (int cell = 0; cell < CELL_COUNT; cell++) {
+                        if (cells[cell] == 0) {
+                            chars[i * CELL_COUNT + cell] = BLANK;
+                        }
+                    }
+                }
+            }
+        }
+
+        void writeValid(Writer writer, long[] counts) throws IOException {
+            for (int i = 0; i < count; i++) {
+                counts[status[i]]++;
+                if (status[i] == VALID) {
+                    writer.write(chars, i * CELL_COUNT, CELL_COUNT);
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Splits a character stream into puzzle lines without creating a string per line.
+     */
+    private static final class LineSource implements AutoCloseable {
+        private final Reader reader;
+        private final char[] buffer = new char[1 << 16];
+        private int position;
+        private int limit;
+        private long lineNumber;
+
+        LineSource(Reader reader) {
+            this.reader = reader;
+        }
+
+        long lineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Copies the puzzle part of the next puzzle line, at most 81 characters, into {@code dest}.
+         * Whitespace before the puzzle part is skipped; a line with content but no puzzle part,
+         * such as one starting with a comma, is returned with length 0 so that it is counted
+         * as malformed.
+         *
+         * @return the full length of the puzzle part, or -1 at the end of the input.
+         */
+        int next(char[] dest, int offset) throws IOException {
+            while (true) {
+                int length = 0;
+                boolean started = false;
+                boolean inPuzzle = true;
+                boolean comment = false;
+                boolean any = false;
+                int ch;
+                while ((ch = read()) >= 0 && ch != '\n') {
+                    any = true;
+                    boolean whitespace = ch == ' ' || ch == '\t' || ch == '\r';
+                    if (!started) {
+                        if (whitespace) {
+                            continue;  // Indentation before the puzzle part
+                        }
+                        started = true;
+                        comment = ch == '#';
+                    }
+                    if (whitespace || ch == ',') {
+                        inPuzzle = false;
+                    } else if (inPuzzle) {
+                        if (length < CELL_COUNT) {
+                            dest[offset + length] = (char) ch;
+                        }
+                        length++;
+                    }
+                }
+                if (ch < 0 && !any) {
+                    return -1;
+                }
+                lineNumber++;
+                if (started && !comment) {
+                    return length;
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (position == limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return -1;
+                }
+            }
+            return buffer[position++];
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * The result of validating a puzzle file.
+     */
+    public static final class Summary {
+        private final long valid;
+        private final long malformed;
+        private final long unsolvable;
+        private final long ambiguous;
+
+        Summary(long valid, long malformed, long unsolvable, long ambiguous) {
+            this.valid = valid;
+            this.malformed = malformed;
+            this.unsolvable = unsolvable;
+            this.ambiguous = ambiguous;
+        }
+
+        /**
+         * Returns the number of puzzles with exactly one solution.
+         *
+         * @return the number of puzzles with exactly one solution.
+         */
+        public long getValid() {
+            return valid;
+        }
+
+        /**
+         * Returns the number of lines that are not 81 valid characters.
+         *
+         * @return the number of lines that are not 81 valid characters.
+         */
+        public long getMalformed() {
+            return malformed;
+        }
+
+        /**
+         * Returns the number of puzzles without a solution.
+         *
+         * @return the number of puzzles without a solution.
+         */
+        public long getUnsolvable() {
+            return unsolvable;
+        }
+
+        /**
+         * Returns the number of puzzles with more than one solution.
+         *
+         * @return the number of puzzles with more than one solution.
+         */
+        public long getAmbiguous() {
+            return ambiguous;
+        }
+
+        @Override
+        public String toString() {
+            return "valid=" + valid + ", malformed=" + malformed + ", unsolvable=" + unsolvable
+                    + ", ambiguous=" + ambiguous;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package kth.io;
+
+import kth.model.SudokuGenerator;
+import kth.model.SudokuRandomizer;
+import kth.model.SudokuRater;
+import kth.model.SudokuSolver;
+import kth.model.SudokuUtilities;
+import kth.model.SudokuUtilities.SudokuLevel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code SudokuPuzzleLibrary} class gives access to a file of pre-generated puzzles.
+ * The file is memory-mapped, so puzzles are read straight from the page cache: opening a
+ * library of millions of puzzles costs no heap, and reading puzzle number {@code n} is a
+ * constant-time lookup that copies nothing but the requested cells.
+ * <p>
+ * Layout of version 1 (multi-byte values are big-endian):
+ * <pre>
+ *   header    64 bytes   magic "SDKL", version, record size, level count, then for
+ *                        every level the index of its first record and its record count
+ *   records   82 bytes   each: puzzle and solution, two cells per byte, high nibble first
+ * </pre>
+ * Records are grouped by level in the order of {@code SudokuLevel}, so a random puzzle of
+ * a level is a random index within that level's range.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class SudokuPuzzleLibrary implements Closeable {
+
+    public static final int MAGIC = 0x53444B4C;  // "SDKL"
+    public static final int VERSION = 1;
+
+    private static final int GRID_SIZE = SudokuUtilities.GRID_SIZE;
+    private static final int CELL_COUNT = GRID_SIZE * GRID_SIZE;
+    private static final int GRID_BYTES = (CELL_COUNT + 1) / 2;
+    private static final int RECORD_SIZE = 2 * GRID_BYTES;
+    private static final int HEADER_SIZE = 64;
+    private static final int LEVEL_COUNT = SudokuLevel.values().length;
+
+    // A single mapping is limited to 2 GB, so large files are mapped in segments of whole records
+    private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / RECORD_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long[] firstRecord = new long[LEVEL_COUNT];
+    private final long[] recordCount = new long[LEVEL_COUNT];
+    private final long size;
+
+    private SudokuPuzzleLibrary(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a Sudoku puzzle library.");
+        }
+        int version = header.getInt();
+        if (version != VERSION || header.getInt() != RECORD_SIZE || header.getInt() != LEVEL_COUNT) {
+            throw new IOException("Unsupported Sudoku puzzle library version: " + version);
+        }
+        long total = 0;
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            firstRecord[level] = header.getLong();
+            recordCount[level] = header.getLong();
+            if (firstRecord[level] != total || recordCount[level] < 0) {
+                throw new IOException("Corrupt Sudoku puzzle library header.");
+            }
+            total += recordCount[level];
+        }
+        if (channel.size() < HEADER_SIZE + total * RECORD_SIZE) {
+            throw new IOException("Truncated Sudoku puzzle library.");
+        }
+        this.size = total;
+
+        int segmentCount = (int) ((total + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT);
+        this.segments = new MappedByteBuffer[segmentCount];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            long first = (long) segment * RECORDS_PER_SEGMENT;
+            long records = Math.min(RECORDS_PER_SEGMENT, total - first);
+            segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + first * RECORD_SIZE, records * RECORD_SIZE);
+        }
+    }
+
+    /**
+     * Opens and maps the puzzle library in the given file.
+     *
+     * @param file the library file.
+     * @return the opened library.
+     * @throws IOException if the file cannot be read or is not a puzzle library.
+     */
+    public static SudokuPuzzleLibrary open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new SudokuPuzzleLibrary(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the total number of puzzles in the library.
+     *
+     * @return the number of puzzles.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of puzzles of a difficulty level.
+     *
+     * @param level the difficulty level.
+     * @return the number of puzzles of that level.
+     */
+    public long size(SudokuLevel level) {
+        return recordCount[level.ordinal()];
+    }
+
+    /**
+     * Returns the index of a randomly chosen puzzle of a difficulty level.
+     *
+     * @param level the difficulty level.
+     * @return the index of the puzzle.
+     * @throws IllegalStateException if the library has no puzzles of that level.
+     */
+    public long randomIndex(SudokuLevel level) {
+        long count = recordCount[level.ordinal()];
+        if (count == 0) {
+            throw new IllegalStateException("The library has no puzzles of level " + level);
+        }
+        return firstRecord[level.ordinal()] + ThreadLocalRandom.current().nextLong(count);
+    }
+
+    /**
+     * Returns one cell of the puzzle with the given index, read directly from the mapped file.
+     *
+     * @param index the index of the puzzle.
+     * @param cell the flat index of the cell, in row-major order.
+     * @return the value of the cell (0 for empty).
+     */
+    public int getPuzzleCell(long index, int cell) {
+        return readNibble(index, 0, cell);
+    }
+
+    /**
+     * Returns one cell of the solution of the puzzle with the given index, read directly
+     * from the mapped file.
+     *
+     * @param index the index of the puzzle.
+     * @param cell the flat index of the cell, in row-major order.
+     * @return the solution value of the cell.
+     */
+    public int getSolutionCell(long index, int cell) {
+        return readNibble(index, GRID_BYTES, cell);
+    }
+
+    /**
+     * Reads the puzzle with the given index into flat arrays of 81 cells.
+     *
+     * @param index the index of the puzzle.
+     * @param puzzle the array receiving the puzzle (0 represents an empty cell).
+     * @param solution the array receiving the solution.
+     */
+    public void readPuzzle(long index, int[] puzzle, int[] solution) {
+        MappedByteBuffer segment = segmentOf(index);
+        int offset = offsetOf(index);
+        for (int cell = 0; cell < CELL_COUNT; cell += 2) {
+            int packedPuzzle = segment.get(offset + cell / 2) & 0xFF;
+            int packedSolution = segment.get(offset + GRID_BYTES + cell / 2) & 0xFF;
+            puzzle[cell] = packedPuzzle >>> 4;
+            solution[cell] = packedSolution >>> 4;
+            if (cell + 1 < CELL_COUNT) {
+                puzzle[cell + 1] = packedPuzzle & 0xF;
+                solution[cell + 1] = packedSolution & 0xF;
+            }
+        }
+    }
+
+    /**
+     * Draws a random puzzle of a difficulty level and applies a random transformation to it,
+     * returning it in the 3D matrix format used by {@code SudokuUtilities}.
+     *
+     * @param level the difficulty level.
+     * @return A 3D integer array where:
+     *         - [row][col][0] contains the initial puzzle values, with '0' representing an empty cell.
+     *         - [row][col][1] contains the solved values.
+     * @throws IllegalStateException if the library has no puzzles of that level.
+     */
+    public int[][][] randomMatrix(SudokuLevel level) {
+        int[] puzzle = new int[CELL_COUNT];
+        int[] solution = new int[CELL_COUNT];
+        readPuzzle(randomIndex(level), puzzle, solution);
+        SudokuRandomizer.randomizeBoard(puzzle, solution, ThreadLocalRandom.current().nextLong());
+
+        int[][][] matrix = new int[GRID_SIZE][GRID_SIZE][2];
+        for (int cell = 0; cell < CELL_COUNT; cell++) {
+            matrix[cell / GRID_SIZE][cell % GRID_SIZE][0] = puzzle[cell];
+            matrix[cell / GRID_SIZE][cell % GRID_SIZE][1] = solution[cell];
+        }
+        return matrix;
+    }
+
+    /**
+     * Closes the file. The mapping itself is released by the garbage collector.
+     *
+     * @throws IOException if an I/O error occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int readNibble(long index, int gridOffset, int cell) {
+        int packed = segmentOf(index).get(offsetOf(index) + gridOffset + cell / 2);
+        return (cell & 1) == 0 ? (packed >>> 4) & 0xF : packed & 0xF;
+    }
+
+    private MappedByteBuffer segmentOf(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Puzzle index out of range: " + index);
+        }
+        return segments[(int) (index / RECORDS_PER_SEGMENT)];
+    }
+
+    private static int offsetOf(long index) {
+        return (int) (index % RECORDS_PER_SEGMENT) * RECORD_SIZE;
+    }
+
+    /**
+     * Generates a new library file with the given number of puzzles per difficulty level.
+     * Puzzles are written as they are generated, so the memory used does not depend on
+     * the size of the library.
+     *
+     * @param file the library file to create or overwrite.
+     * @param puzzlesPerLevel the number of puzzles to generate for every level.
+     * @throws IOException if an I/O error occurs while writing the file.
+     */
+    public static void build(Path file, long puzzlesPerLevel) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long[] counts = new long[LEVEL_COUNT];
+            Arrays.fill(counts, puzzlesPerLevel);
+            putHeader(buffer, counts);
+
+            SudokuGenerator generator = new SudokuGenerator();
+            int[] puzzle = new int[CELL_COUNT];
+            int[] solution = new int[CELL_COUNT];
+            for (SudokuLevel level : SudokuLevel.values()) {
+                for (long i = 0; i < puzzlesPerLevel; i++) {
+                    generator.generate(level, puzzle, solution);
+                    if (buffer.remaining() < RECORD_SIZE) {
+                        writeFully(out, buffer);
+                    }
+                    putGrid(buffer, puzzle);
+                    putGrid(buffer, solution);
+                }
+            }
+            writeFully(out, buffer);
+        }
+    }
+
+    /**
+     * Builds a library file from a file of puzzle lines, rating every puzzle to decide its
+     * difficulty level. Malformed puzzles and puzzles without exactly one solution are
+     * skipped. Records are staged in one temporary file per level next to the library and
+     * then copied behind the header, so the memory used does not depend on the number of
+     * puzzles.
+     *
+     * @param lines the puzzle file to import, in the format read by {@code SudokuLineIO}.
+     * @param file the library file to create or overwrite.
+     * @return the number of puzzles imported for every level, in the order of {@code SudokuLevel}.
+     * @throws IOException if an I/O error occurs while reading or writing.
+     */
+    public static long[] importLines(Path lines, Path file) throws IOException {
+        SudokuSolver solver = new SudokuSolver();
+        SudokuRater rater = new SudokuRater();
+        int[] solution = new int[CELL_COUNT];
+        long[] counts = new long[LEVEL_COUNT];
+        Path[] staged = new Path[LEVEL_COUNT];
+        FileChannel[] channels = new FileChannel[LEVEL_COUNT];
+        ByteBuffer[] buffers = new ByteBuffer[LEVEL_COUNT];
+        Path directory = file.toAbsolutePath().getParent();
+        try {
+            for (int level = 0; level < LEVEL_COUNT; level++) {
+                staged[level] = Files.createTempFile(directory, "sudoku-level", ".tmp");
+                channels[level] = FileChannel.open(staged[level], StandardOpenOption.READ, StandardOpenOption.WRITE);
+                buffers[level] = ByteBuffer.allocate(64 * 1024);
+            }
+            try {
+                SudokuLineIO.forEach(lines, (lineNumber, cells) -> {
+                    if (solver.countSolutions(cells, 2) != 1) {
+                        return;
+                    }
+                    solver.solve(cells, solution);
+                    int level = rater.rate(cells).getLevel().ordinal();
+                    try {
+                        if (buffers[level].remaining() < RECORD_SIZE) {
+                            writeFully(channels[level], buffers[level]);
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    putGrid(buffers[level], cells);
+                    putGrid(buffers[level], solution);
+                    counts[level]++;
+                }, lineNumber -> { });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                putHeader(header, counts);
+                writeFully(out, header);
+                for (int level = 0; level < LEVEL_COUNT; level++) {
+                    writeFully(channels[level], buffers[level]);
+                    long length = channels[level].size();
+                    for (long position = 0; position < length; ) {
+                        position += channels[level].transferTo(position, length - position, out);
+                    }
+                }
+            }
+        } finally {
+            for (int level = 0; level < LEVEL_COUNT; level++) {
+                if (channels[level] != null) {
+                    channels[level].close();
+                }
+                if (staged[level] != null) {
+                    Files.deleteIfExists(staged[level]);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Writes the header for the given number of puzzles per level and moves the buffer to
+     * the first record.
+     */
+    private static void putHeader(ByteBuffer buffer, long[] counts) {
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(RECORD_SIZE).putInt(LEVEL_COUNT);
+        long first = 0;
+        for (int level = 0; level < LEVEL_COUNT; level++) {
+            buffer.putLong(first).putLong(counts[level]);
+            first += counts[level];
+        }
+        buffer.position(HEADER_SIZE);
+    }
+
+    private static void putGrid(ByteBuffer buffer, int[] grid) {
+        for (int cell = 0; cell < CELL_COUNT; cell += 2) {
+            int low = cell + 1 < CELL_COUNT ? grid[cell + 1] : 0;
+            buffer.put((byte) ((grid[cell] << 4) | low));
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Builds a puzzle library from the command line, either by generating puzzles or by
+     * importing and rating the puzzles of a puzzle file.
+     *
+     * @param args the library file followed by the number of puzzles per difficulty level,
+     *             or by {@code --import} and a puzzle file.
+     * @throws IOException if an I/O error occurs while reading or writing.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[1].equals("--import")) {
+            long[] counts = importLines(Path.of(args[2]), Path.of(args[0]));
+            for (SudokuLevel level : SudokuLevel.values()) {
+                System.out.println(level + ": " + counts[level.ordinal()]);
+            }
+        } else if (args.length == 2) {
+            build(Path.of(args[0]), Long.parseLong(args[1]));
+        } else {
+            System.err.println("Usage: SudokuPuzzleLibrary <library file> (<puzzles per level> | --import <puzzle file>)");
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package kth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a check of the player's solution.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@Name("kth.sudoku.Check")
+@Label("Solution Check")
+@Category("Sudoku")
+@Description("Check of the current board against the solution")
+public class CheckEvent extends jdk.jfr.Event {
+
+    @Label("Filled Cells")
+    public int filled;
+
+    @Label("Solved")
+    public boolean solved;
+
+    @Label("Correct So Far")
+    @Description("Every filled cell holds its solution value")
+    public boolean correct;
+
+    @Label("Conflicts")
+    @Description("Some row, column or box holds a digit twice")
+    public boolean conflicts;
+}
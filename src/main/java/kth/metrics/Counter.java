@@ -0,0 +1,48 @@
+package kth.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@code Counter} class counts events or adds up amounts, such as bytes written.
+ * It is backed by a {@code LongAdder}, so threads updating the same counter do not
+ * contend for one memory location.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Adds one to the counter.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Adds an amount to the counter.
+     *
+     * @param amount the amount to add.
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Returns the current value of the counter.
+     *
+     * @return the sum of everything added.
+     */
+    public long get() {
+        return value.sum();
+    }
+
+    /**
+     * Sets the counter back to zero.
+     */
+    public void reset() {
+        value.reset();
+    }
+}
@@ -0,0 +1,34 @@
+package kth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for saving a game to a file or loading it from one.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@Name("kth.sudoku.GameIO")
+@Label("Save or Load Game")
+@Category("Sudoku")
+@Description("Saving or loading a game file")
+public class GameIOEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("\"save\" or \"load\"")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,29 @@
+package kth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the generation of one puzzle and its solution.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@Name("kth.sudoku.Generation")
+@Label("Puzzle Generation")
+@Category("Sudoku")
+@Description("Generation of a puzzle with a unique solution")
+public class GenerationEvent extends jdk.jfr.Event {
+
+    @Label("Level")
+    public String level;
+
+    @Label("Box Size")
+    public int boxSize;
+
+    @Label("Clues")
+    @Description("Number of given cells in the generated puzzle")
+    public int clues;
+}
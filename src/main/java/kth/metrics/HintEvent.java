@@ -0,0 +1,26 @@
+package kth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the search of one hint.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@Name("kth.sudoku.Hint")
+@Label("Hint")
+@Category("Sudoku")
+@Description("Search for the next hint of a board")
+public class HintEvent extends jdk.jfr.Event {
+
+    @Label("Technique")
+    @Description("Technique that deduces the value, GUESS if it was taken from the solution, empty if the board is full")
+    public String technique;
+
+    @Label("Empty Cells")
+    public int emptyCells;
+}
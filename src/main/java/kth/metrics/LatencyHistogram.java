@@ -0,0 +1,145 @@
+package kth.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The {@code LatencyHistogram} class records non-negative values, typically latencies in
+ * nanoseconds, into log-linear buckets in the style of an HDR histogram. Values below 64
+ * are counted exactly; larger values are grouped into 32 buckets per power of two, which
+ * keeps every reported percentile within about 3% of the recorded value.
+ * <p>
+ * Recording is a single atomic increment and never allocates, so one histogram can be
+ * shared by many threads.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int EXACT_LIMIT = 2 * SUB_BUCKETS;
+    private static final int BUCKET_COUNT = bucketOf(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Records one value. Negative values are recorded as 0.
+     *
+     * @param value the value to record.
+     */
+    public void record(long value) {
+        counts.incrementAndGet(bucketOf(Math.max(0, value)));
+    }
+
+    /**
+     * Adds all values recorded by another histogram to this one.
+     *
+     * @param other the histogram to add.
+     */
+    public void add(LatencyHistogram other) {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            long count = other.counts.get(bucket);
+            if (count != 0) {
+                counts.addAndGet(bucket, count);
+            }
+        }
+    }
+
+    /**
+     * Removes all recorded values.
+     */
+    public void reset() {
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            counts.set(bucket, 0);
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of values.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            total += counts.get(bucket);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the value below which the given percentage of the recorded values fall.
+     *
+     * @param percentile the percentile, between 0 and 100.
+     * @return the value at that percentile, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank) {
+                return valueOf(bucket);
+            }
+        }
+        return valueOf(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Returns the largest recorded value, rounded down to its bucket.
+     *
+     * @return the largest value, or 0 if nothing was recorded.
+     */
+    public long getMax() {
+        for (int bucket = BUCKET_COUNT - 1; bucket >= 0; bucket--) {
+            if (counts.get(bucket) != 0) {
+                return valueOf(bucket);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the mean of the recorded values, computed from the bucket values.
+     *
+     * @return the mean, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long total = 0;
+        double sum = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            long count = counts.get(bucket);
+            total += count;
+            sum += (double) count * valueOf(bucket);
+        }
+        return total == 0 ? 0 : sum / total;
+    }
+
+    /**
+     * Returns the bucket of a value: values below 64 have their own bucket, larger values
+     * share a bucket with the values that agree in their six most significant bits.
+     */
+    private static int bucketOf(long value) {
+        if (value < EXACT_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the smallest value that falls into a bucket.
+     */
+    private static long valueOf(int bucket) {
+        if (bucket < EXACT_LIMIT) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,154 @@
+package kth.metrics;
+
+/**
+ * The {@code Metrics} class is the switch and the shared registry for the metrics of the
+ * game. Recording is turned on with the system property {@code sudoku.metrics=true}; the
+ * registry is then printed to standard error when the program exits.
+ * <p>
+ * The switch is a constant, so with metrics off the JIT compiler removes the recording code,
+ * including the calls to {@code System.nanoTime}, and an instrumented operation costs the same
+ * as before. The instrumented code follows one pattern:
+ * <pre>
+ *   long start = Metrics.start();
+ *   ...
+ *   Metrics.stop(LATENCY, start);
+ * </pre>
+ * The same operations are also reported as JFR events (see {@code GenerationEvent} and its
+ * siblings), which are recorded independently of this switch whenever a flight recording
+ * with the events enabled is running.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public final class Metrics {
+
+    /** Whether metrics are recorded, from the system property {@code sudoku.metrics}. */
+    public static final boolean ENABLED = Boolean.getBoolean("sudoku.metrics");
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+    private static final Counter CHECKS = REGISTRY.counter("check");
+    private static final Counter CHECKS_SOLVED = REGISTRY.counter("check.solved");
+    private static final Counter CHECKS_WITH_MISTAKES = REGISTRY.counter("check.mistakes");
+    private static final LatencyHistogram STARTUP = REGISTRY.histogram("startup.first-frame");
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> REGISTRY.report(System.err), "sudoku-metrics-report"));
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Returns the shared registry.
+     *
+     * @return the registry.
+     */
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Returns the counter with the given name from the shared registry.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public static Counter counter(String name) {
+        return REGISTRY.counter(name);
+    }
+
+    /**
+     * Returns the latency histogram with the given name from the shared registry.
+     *
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    public static LatencyHistogram histogram(String name) {
+        return REGISTRY.histogram(name);
+    }
+
+    /**
+     * Returns the start time of an operation to be measured.
+     *
+     * @return the current {@code System.nanoTime()}, or 0 if metrics are off.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since {@code start} in a histogram, if metrics are on.
+     *
+     * @param histogram the histogram receiving the latency.
+     * @param start the value returned by {@link #start()}.
+     */
+    public static void stop(LatencyHistogram histogram, long start) {
+        if (ENABLED) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Records a check of the player's solution in the {@code check} counters and as a
+     * {@link CheckEvent}. The checks of a board take constant time, so only the outcome
+     * is recorded, not the latency.
+     *
+     * @param filled the number of filled cells.
+     * @param solved whether the board is solved.
+     * @param correct whether every filled cell holds its solution value.
+     * @param conflicts whether some row, column or box holds a digit twice.
+     */
+    public static void recordCheck(int filled, boolean solved, boolean correct, boolean conflicts) {
+        if (ENABLED) {
+            CHECKS.increment();
+            if (solved) {
+                CHECKS_SOLVED.increment();
+            } else if (!correct) {
+                CHECKS_WITH_MISTAKES.increment();
+            }
+        }
+        CheckEvent event = new CheckEvent();
+        if (event.shouldCommit()) {
+            event.filled = filled;
+            event.solved = solved;
+            event.correct = correct;
+            event.conflicts = conflicts;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records the time from the start of the program to its first drawn frame in the
+     * {@code startup.first-frame} histogram and as a {@link StartupEvent}.
+     *
+     * @param timeToFirstFrame the time to the first frame in nanoseconds.
+     * @param boxSize the box size of the board shown.
+     * @param resumed whether the game was restored from the autosave.
+     */
+    public static void recordStartup(long timeToFirstFrame, int boxSize, boolean resumed) {
+        if (ENABLED) {
+            STARTUP.record(timeToFirstFrame);
+        }
+        StartupEvent event = new StartupEvent();
+        if (event.shouldCommit()) {
+            event.timeToFirstFrame = timeToFirstFrame;
+            event.boxSize = boxSize;
+            event.resumed = resumed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Adds an amount to a counter, if metrics are on.
+     *
+     * @param counter the counter.
+     * @param amount the amount to add.
+     */
+    public static void count(Counter counter, long amount) {
+        if (ENABLED) {
+            counter.add(amount);
+        }
+    }
+}
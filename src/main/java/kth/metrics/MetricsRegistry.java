@@ -0,0 +1,69 @@
+package kth.metrics;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * The {@code MetricsRegistry} class holds named counters and latency histograms. An
+ * instrument is created the first time its name is asked for and the same instrument is
+ * returned afterwards, so callers look their instruments up once and keep them.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class MetricsRegistry {
+
+    // Sorted by name, so that related instruments are reported together
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns the counter with the given name, creating it if needed.
+     *
+     * @param name the name of the counter, for example {@code "save.bytes"}.
+     * @return the counter.
+     */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    /**
+     * Returns the latency histogram with the given name, creating it if needed.
+     *
+     * @param name the name of the histogram, for example {@code "save.latency"}.
+     * @return the histogram, recording nanoseconds by convention.
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Sets every counter back to zero and empties every histogram.
+     */
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(LatencyHistogram::reset);
+    }
+
+    /**
+     * Prints every counter that is not zero and every histogram that holds values, with the
+     * count and the p50/p99/max latency in microseconds.
+     *
+     * @param out the stream to print to.
+     */
+    public void report(PrintStream out) {
+        counters.forEach((name, counter) -> {
+            if (counter.get() != 0) {
+                out.printf("%-28s %d%n", name, counter.get());
+            }
+        });
+        histograms.forEach((name, histogram) -> {
+            long count = histogram.getCount();
+            if (count != 0) {
+                out.printf("%-28s count %d, p50 %.1f us, p99 %.1f us, max %.1f us%n", name, count,
+                        histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3, histogram.getMax() / 1e3);
+            }
+        });
+    }
+}
@@ -0,0 +1,22 @@
+package kth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the random transformation of one puzzle and its solution.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@Name("kth.sudoku.Randomization")
+@Label("Puzzle Randomization")
+@Category("Sudoku")
+@Description("Random relabelling, permutation and transposition of a puzzle")
+public class RandomizationEvent extends jdk.jfr.Event {
+
+    @Label("Box Size")
+    public int boxSize;
+}
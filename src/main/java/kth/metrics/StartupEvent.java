@@ -0,0 +1,32 @@
+package kth.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for the start of the game, committed when the first frame has been drawn.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+@Name("kth.sudoku.Startup")
+@Label("Startup")
+@Category("Sudoku")
+@Description("Start of the game up to the first drawn frame")
+public class StartupEvent extends jdk.jfr.Event {
+
+    @Label("Time To First Frame")
+    @Description("Time from loading the application class to the first drawn frame")
+    @Timespan(Timespan.NANOSECONDS)
+    public long timeToFirstFrame;
+
+    @Label("Box Size")
+    public int boxSize;
+
+    @Label("Resumed")
+    @Description("The game was restored from the autosave instead of generated")
+    public boolean resumed;
+}
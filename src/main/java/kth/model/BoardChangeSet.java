@@ -0,0 +1,84 @@
+package kth.model;
+
+/**
+ * The {@code BoardChangeSet} class lists the cells changed by one operation on a
+ * {@link SudokuBoard}. Every change is packed into an {@code int} in the format of
+ * {@link MoveLog}, and the set is reused by the board for every operation, so reporting
+ * a batch of changes does not allocate.
+ * <p>
+ * A cell is listed when its value, or whether it is a given cell, changed. In the latter
+ * case the old and new value may be equal.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public final class BoardChangeSet {
+
+    private final int[] changes;
+    private int size;
+    private int cause;
+
+    BoardChangeSet(int cellCount) {
+        this.changes = new int[cellCount];
+    }
+
+    /**
+     * Empties the set for a new operation.
+     */
+    void begin(int cause) {
+        this.cause = cause;
+        this.size = 0;
+    }
+
+    void add(int cell, int oldValue, int newValue) {
+        changes[size++] = MoveLog.encode(cell, oldValue, newValue, false);
+    }
+
+    /**
+     * Returns why the cells changed.
+     *
+     * @return one of the cause constants of {@link BoardListener}.
+     */
+    public int getCause() {
+        return cause;
+    }
+
+    /**
+     * Returns the number of changed cells.
+     *
+     * @return the number of changes in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the cell of a change.
+     *
+     * @param index the index of the change, from 0 to {@code size() - 1}.
+     * @return the flat, row-major index of the cell.
+     */
+    public int cellAt(int index) {
+        return MoveLog.cellOf(changes[index]);
+    }
+
+    /**
+     * Returns the value of a cell before a change.
+     *
+     * @param index the index of the change, from 0 to {@code size() - 1}.
+     * @return the old value.
+     */
+    public int oldValueAt(int index) {
+        return MoveLog.oldValueOf(changes[index]);
+    }
+
+    /**
+     * Returns the value of a cell after a change.
+     *
+     * @param index the index of the change, from 0 to {@code size() - 1}.
+     * @return the new value.
+     */
+    public int newValueAt(int index) {
+        return MoveLog.newValueOf(changes[index]);
+    }
+}
@@ -0,0 +1,90 @@
+package kth.model;
+
+/**
+ * The {@code BoardCounters} interface is the storage of the counters that let a board answer
+ * its checks in constant time: the number of filled cells, the number of cells that differ
+ * from their solution value, the number of repeated digits, and how often each digit occurs
+ * in each row, column and box. {@code SudokuBoard} keeps the counters in its fields and
+ * {@code OffHeapBoard} in the slot of its board, and both update them with
+ * {@link #track}, so the rules for the counters are written once.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+interface BoardCounters {
+
+    /**
+     * Adds to the number of filled cells.
+     *
+     * @param delta 1 or -1.
+     */
+    void addFilled(int delta);
+
+    /**
+     * Adds to the number of filled cells that differ from their solution value.
+     *
+     * @param delta 1 or -1.
+     */
+    void addMismatches(int delta);
+
+    /**
+     * Adds to the number of digits that repeat an earlier occurrence in a unit.
+     *
+     * @param delta 1 or -1.
+     */
+    void addConflicts(int delta);
+
+    /**
+     * Adds to the number of occurrences of a digit in a unit.
+     *
+     * @param unit the index of the unit, as in {@code SudokuGeometry.units}.
+     * @param val the digit.
+     * @param delta 1 or -1.
+     * @return the new number of occurrences.
+     */
+    int addToUnit(int unit, int val, int delta);
+
+    /**
+     * Updates the counters for a cell that changes from {@code oldVal} to {@code newVal}.
+     *
+     * @param geometry the geometry of the board.
+     * @param counters the counters of the board.
+     * @param cell the flat index of the cell.
+     * @param solution the solution value of the cell.
+     * @param oldVal the previous value of the cell, 0 for empty.
+     * @param newVal the new value of the cell, 0 for empty.
+     */
+    static void track(SudokuGeometry geometry, BoardCounters counters, int cell, int solution,
+                      int oldVal, int newVal) {
+        if (oldVal != 0) {
+            counters.addFilled(-1);
+            if (oldVal != solution) {
+                counters.addMismatches(-1);
+            }
+            removeFromUnit(counters, geometry.rowOf[cell], oldVal);
+            removeFromUnit(counters, geometry.size + geometry.colOf[cell], oldVal);
+            removeFromUnit(counters, 2 * geometry.size + geometry.boxOf[cell], oldVal);
+        }
+        if (newVal != 0) {
+            counters.addFilled(1);
+            if (newVal != solution) {
+                counters.addMismatches(1);
+            }
+            addToUnit(counters, geometry.rowOf[cell], newVal);
+            addToUnit(counters, geometry.size + geometry.colOf[cell], newVal);
+            addToUnit(counters, 2 * geometry.size + geometry.boxOf[cell], newVal);
+        }
+    }
+
+    private static void addToUnit(BoardCounters counters, int unit, int val) {
+        if (counters.addToUnit(unit, val, 1) > 1) {
+            counters.addConflicts(1);  // The digit already occurs in this unit
+        }
+    }
+
+    private static void removeFromUnit(BoardCounters counters, int unit, int val) {
+        if (counters.addToUnit(unit, val, -1) > 0) {
+            counters.addConflicts(-1);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package kth.model;
+
+/**
+ * A {@code BoardListener} is told about every change of the values on a {@link SudokuBoard}.
+ * Single moves are reported as primitive arguments, so an event costs no allocation or
+ * boxing. Operations that change many cells at once, such as a reset or a new puzzle, are
+ * reported once, as a {@link BoardChangeSet} listing only the cells that changed.
+ * <p>
+ * Listeners are called on the thread that changed the board, after the board, its counters
+ * and its candidates have been updated.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public interface BoardListener {
+
+    /** The player placed or cleared a value. */
+    int PLAYER = 0;
+    /** A value was placed by a hint. */
+    int HINT = 1;
+    /** A move was undone. */
+    int UNDO = 2;
+    /** The board was reset to its initial puzzle. */
+    int RESET = 3;
+    /** A saved or restored game was loaded into the board. */
+    int LOAD = 4;
+    /** A new puzzle was loaded into the board. */
+    int NEW_PUZZLE = 5;
+
+    /**
+     * Called when the value of a single cell has changed.
+     *
+     * @param board the board that changed.
+     * @param cell the flat, row-major index of the cell.
+     * @param oldValue the value before the change.
+     * @param newValue the value after the change.
+     * @param cause why the cell changed, one of the constants of this interface.
+     */
+    void cellChanged(SudokuBoard board, int cell, int oldValue, int newValue, int cause);
+
+    /**
+     * Called when many cells have changed in one operation. The change set belongs to the
+     * board and is only valid during the call. By default every change is passed on to
+     * {@link #cellChanged}.
+     *
+     * @param board the board that changed.
+     * @param changes the cells that changed.
+     */
+    default void boardChanged(SudokuBoard board, BoardChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            cellChanged(board, changes.cellAt(i), changes.oldValueAt(i), changes.newValueAt(i), changes.getCause());
+        }
+    }
+}
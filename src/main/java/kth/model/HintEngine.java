@@ -0,0 +1,127 @@
+package kth.model;
+
+import kth.metrics.Counter;
+import kth.metrics.HintEvent;
+import kth.metrics.LatencyHistogram;
+import kth.metrics.Metrics;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * The {@code HintEngine} class finds the next hint for a board. It prefers a cell whose
+ * value follows from the current board by a hidden or naked single, read from the
+ * candidate masks the board keeps for its empty cells. When no single exists, or
+ * when the deduced value contradicts the solution because the player has made mistakes,
+ * a random empty cell is picked from the board's set of empty cells and its solution
+ * value is revealed.
+ * <p>
+ * The work does not depend on how full the board is: the candidates are maintained by the
+ * board on every change and the random pick is a single index into the empty cell set.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class HintEngine {
+
+    private static final LatencyHistogram LATENCY = Metrics.histogram("hint.latency");
+    private static final Counter LOGICAL = Metrics.counter("hint.logical");
+    private static final Counter GUESS = Metrics.counter("hint.guess");
+
+    private HintEngine() {
+    }
+
+    /**
+     * Returns the next hint for the board.
+     *
+     * @param board the board to find a hint for.
+     * @param random the source of randomness for picking a cell to reveal.
+     * @return the hint, or {@code null} if the board has no empty cells.
+     */
+    public static SudokuHint findHint(SudokuBoard board, RandomGenerator random) {
+        HintEvent event = new HintEvent();
+        event.begin();
+        long start = Metrics.start();
+        SudokuHint hint = search(board, random);
+        Metrics.stop(LATENCY, start);
+        if (hint != null) {
+            Metrics.count(hint.isLogical() ? LOGICAL : GUESS, 1);
+        }
+        if (event.shouldCommit()) {
+            event.technique = hint == null ? "" : hint.getTechnique().name();
+            event.emptyCells = board.emptyCount();
+            event.commit();
+        }
+        return hint;
+    }
+
+    /**
+     * Finds the hint described by {@link #findHint}.
+     */
+    private static SudokuHint search(SudokuBoard board, RandomGenerator random) {
+        if (board.emptyCount() == 0) {
+            return null;
+        }
+        SudokuHint hint = findHiddenSingle(board);
+        if (hint == null) {
+            hint = findNakedSingle(board);
+        }
+        if (hint != null) {
+            return hint;
+        }
+        int cell = board.emptyCellAt(random.nextInt(board.emptyCount()));
+        return hintFor(board, cell, board.solutionAt(cell), SudokuRater.Technique.GUESS);
+    }
+
+    /**
+     * Looks for a digit that fits in only one empty cell of a row, column or box.
+     */
+    private static SudokuHint findHiddenSingle(SudokuBoard board) {
+        for (int[] unit : board.getGeometry().units) {
+            int once = 0;
+            int twice = 0;
+            for (int cell : unit) {
+                if (board.valueAt(cell) == 0) {
+                    int candidates = board.candidatesOf(cell);
+                    twice |= once & candidates;
+                    once |= candidates;
+                }
+            }
+            int hidden = once & ~twice;
+            while (hidden != 0) {
+                int bit = hidden & -hidden;
+                hidden &= hidden - 1;
+                for (int cell : unit) {
+                    if (board.valueAt(cell) == 0 && (board.candidatesOf(cell) & bit) != 0) {
+                        int value = Integer.numberOfTrailingZeros(bit) + 1;
+                        if (value == board.solutionAt(cell)) {
+                            return hintFor(board, cell, value, SudokuRater.Technique.HIDDEN_SINGLE);
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks for an empty cell with only one candidate.
+     */
+    private static SudokuHint findNakedSingle(SudokuBoard board) {
+        for (int position = 0; position < board.emptyCount(); position++) {
+            int cell = board.emptyCellAt(position);
+            int candidates = board.candidatesOf(cell);
+            if (candidates != 0 && (candidates & (candidates - 1)) == 0) {
+                int value = Integer.numberOfTrailingZeros(candidates) + 1;
+                if (value == board.solutionAt(cell)) {
+                    return hintFor(board, cell, value, SudokuRater.Technique.NAKED_SINGLE);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static SudokuHint hintFor(SudokuBoard board, int cell, int value, SudokuRater.Technique technique) {
+        return new SudokuHint(board.getGeometry().rowOf(cell), board.getGeometry().colOf(cell), value, technique);
+    }
+}
@@ -0,0 +1,189 @@
+package kth.model;
+
+/**
+ * The {@code MoveLog} class records the moves of a game for undo and redo. Every move is
+ * packed into a single {@code int}:
+ * <pre>
+ *   bits  0-9    cell index (row-major)
+ *   bits 10-14   old value
+ *   bits 15-19   new value
+ *   bit  20      set if the move was a hint
+ * </pre>
+ * The moves are kept in a ring buffer that starts small and doubles when full, up to
+ * {@link #MAX_CAPACITY} moves; beyond that the oldest move is forgotten. Recording,
+ * undoing and redoing never allocate except when the buffer grows.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class MoveLog {
+
+    public static final int MAX_CAPACITY = 1 << 16;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int CELL_BITS = 10;
+    private static final int VALUE_BITS = 5;
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+    private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+    private static final int OLD_SHIFT = CELL_BITS;
+    private static final int NEW_SHIFT = CELL_BITS + VALUE_BITS;
+    private static final int HINT_BIT = 1 << (CELL_BITS + 2 * VALUE_BITS);
+
+    private int[] moves = new int[INITIAL_CAPACITY];
+    private int start;     // Index of the oldest move in the buffer
+    private int count;     // Number of moves in the buffer, including undone ones
+    private int position;  // Number of moves that are currently applied
+
+    /**
+     * Packs a move into an {@code int}.
+     *
+     * @param cell the flat index of the cell.
+     * @param oldValue the value of the cell before the move.
+     * @param newValue the value of the cell after the move.
+     * @param hint {@code true} if the move was a hint.
+     * @return the packed move.
+     * @throws IllegalArgumentException if the cell or a value does not fit in the packed form.
+     */
+    public static int encode(int cell, int oldValue, int newValue, boolean hint) {
+        if ((cell & ~CELL_MASK) != 0 || (oldValue & ~VALUE_MASK) != 0 || (newValue & ~VALUE_MASK) != 0) {
+            throw new IllegalArgumentException("Move out of range: " + cell + ", " + oldValue + ", " + newValue);
+        }
+        return cell | oldValue << OLD_SHIFT | newValue << NEW_SHIFT | (hint ? HINT_BIT : 0);
+    }
+
+    /**
+     * Returns the cell of a packed move.
+     *
+     * @param move the packed move.
+     * @return the flat index of the cell.
+     */
+    public static int cellOf(int move) {
+        return move & CELL_MASK;
+    }
+
+    /**
+     * Returns the value of the cell before a packed move.
+     *
+     * @param move the packed move.
+     * @return the old value.
+     */
+    public static int oldValueOf(int move) {
+        return (move >>> OLD_SHIFT) & VALUE_MASK;
+    }
+
+    /**
+     * Returns the value of the cell after a packed move.
+     *
+     * @param move the packed move.
+     * @return the new value.
+     */
+    public static int newValueOf(int move) {
+        return (move >>> NEW_SHIFT) & VALUE_MASK;
+    }
+
+    /**
+     * Returns whether a packed move was a hint.
+     *
+     * @param move the packed move.
+     * @return {@code true} if the move was a hint.
+     */
+    public static boolean isHint(int move) {
+        return (move & HINT_BIT) != 0;
+    }
+
+    /**
+     * Records a move that has just been made. Moves that were undone can no longer be redone.
+     *
+     * @param move the packed move.
+     */
+    public void record(int move) {
+        count = position;
+        if (count == moves.length) {
+            if (moves.length < MAX_CAPACITY) {
+                grow();
+            } else {
+                start = (start + 1) & (moves.length - 1);  // Forget the oldest move
+                count--;
+                position--;
+            }
+        }
+        moves[(start + count) & (moves.length - 1)] = move;
+        count++;
+        position++;
+    }
+
+    /**
+     * Returns whether there is a move to undo.
+     *
+     * @return {@code true} if a move can be undone.
+     */
+    public boolean canUndo() {
+        return position > 0;
+    }
+
+    /**
+     * Returns whether there is an undone move to redo.
+     *
+     * @return {@code true} if a move can be redone.
+     */
+    public boolean canRedo() {
+        return position < count;
+    }
+
+    /**
+     * Steps back over the last applied move. The caller reverts it.
+     *
+     * @return the packed move to revert.
+     * @throws IllegalStateException if there is no move to undo.
+     */
+    public int undo() {
+        if (position == 0) {
+            throw new IllegalStateException("Nothing to undo.");
+        }
+        position--;
+        return moves[(start + position) & (moves.length - 1)];
+    }
+
+    /**
+     * Steps forward over the next undone move. The caller applies it again.
+     *
+     * @return the packed move to apply.
+     * @throws IllegalStateException if there is no move to redo.
+     */
+    public int redo() {
+        if (position == count) {
+            throw new IllegalStateException("Nothing to redo.");
+        }
+        return moves[(start + position++) & (moves.length - 1)];
+    }
+
+    /**
+     * Returns the number of moves that are currently applied.
+     *
+     * @return the number of moves that can be undone.
+     */
+    public int size() {
+        return position;
+    }
+
+    /**
+     * Forgets all moves.
+     */
+    public void clear() {
+        start = 0;
+        count = 0;
+        position = 0;
+    }
+
+    /**
+     * Doubles the buffer, moving the moves to the start of the new buffer.
+     */
+    private void grow() {
+        int[] grown = new int[moves.length * 2];
+        for (int i = 0; i < count; i++) {
+            grown[i] = moves[(start + i) & (moves.length - 1)];
+        }
+        moves = grown;
+        start = 0;
+    }
+}
@@ -0,0 +1,261 @@
+package kth.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The {@code OffHeapBoard} class is a flyweight view of one board in an
+ * {@link OffHeapBoardStore}. It offers the read and write operations of {@code SudokuBoard}
+ * and carries them out directly on the board's slot, so playing a stored game creates no
+ * objects. A view is bound to one handle at a time and can be rebound to another board of
+ * the same store at any moment.
+ * <p>
+ * A view holds no state of the board itself, so several views may be bound to the same
+ * board, but the board must only be used by one thread at a time.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public final class OffHeapBoard {
+    private final OffHeapBoardStore store;
+    private final SudokuGeometry geometry;
+    private final BoardCounters counters = new SlotCounters();
+    private ByteBuffer slab;
+    private int base;
+    private int handle = -1;
+
+    OffHeapBoard(OffHeapBoardStore store) {
+        this.store = store;
+        this.geometry = store.geometry;
+    }
+
+    /**
+     * Binds the view to a board of the store.
+     *
+     * @param handle the handle of the board.
+     * @return this view.
+     * @throws IllegalArgumentException if the handle does not refer to a board in the store.
+     */
+    public OffHeapBoard bind(int handle) {
+        store.checkHandle(handle);
+        this.slab = store.slabOf(handle);
+        this.base = store.baseOf(handle);
+        this.handle = handle;
+        return this;
+    }
+
+    /**
+     * Returns the handle of the board the view is bound to.
+     *
+     * @return the handle, or -1 if the view is not bound.
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Returns the geometry of the board.
+     *
+     * @return the geometry.
+     */
+    public SudokuGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the number of rows (and columns) of the board.
+     *
+     * @return the size of the board, 9 for the standard board.
+     */
+    public int getSize() {
+        return geometry.size;
+    }
+
+    /**
+     * Returns the value of a specific cell on the current board.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return the value of the specified cell.
+     */
+    public int getCellVal(int row, int col) {
+        return slab.get(base + store.valuesOffset + cellOf(row, col));
+    }
+
+    /**
+     * Returns the initial value of a specific cell.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return the initial value of the specified cell (0 for empty).
+     */
+    public int getInitialVal(int row, int col) {
+        return slab.get(base + store.givensOffset + cellOf(row, col));
+    }
+
+    /**
+     * Returns the solution value of a specific cell.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return the solution value of the specified cell.
+     */
+    public int getSolutionVal(int row, int col) {
+        return slab.get(base + store.solutionOffset + cellOf(row, col));
+    }
+
+    /**
+     * Returns whether a specific cell can be changed by the player, that is whether it
+     * was empty in the initial puzzle.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return {@code true} if the cell is editable.
+     */
+    public boolean isEditable(int row, int col) {
+        return getInitialVal(row, col) == 0;
+    }
+
+    /**
+     * Sets the value of a specific cell on the current board. Cells that are part of the
+     * initial puzzle are not changed.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @param val the value to set in the cell.
+     * @throws IllegalArgumentException if the value is outside the range 0 to the grid size.
+     */
+    public void setCellVal(int row, int col, int val) {
+        if (val < 0 || val > geometry.size) {
+            throw new IllegalArgumentException("Invalid cell value: " + val);
+        }
+        int cell = cellOf(row, col);
+        int oldVal = slab.get(base + store.valuesOffset + cell);
+        if (slab.get(base + store.givensOffset + cell) == 0 && oldVal != val) {
+            track(cell, oldVal, val);
+            slab.put(base + store.valuesOffset + cell, (byte) val);
+        }
+    }
+
+    /**
+     * Resets the board to its initial state.
+     */
+    public void resetToInitialBoard() {
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            slab.put(base + store.valuesOffset + cell, slab.get(base + store.givensOffset + cell));
+        }
+        recount();
+    }
+
+    /**
+     * Checks if the current board matches the solution.
+     *
+     * @return {@code true} if the current board matches the solution, {@code false} otherwise.
+     */
+    public boolean isSolved() {
+        return getFilledCount() == geometry.cellCount && counter(OffHeapBoardStore.MISMATCHES) == 0;
+    }
+
+    /**
+     * Checks if all filled cells hold their solution values.
+     *
+     * @return {@code true} if all filled cells have the correct values, {@code false} otherwise.
+     */
+    public boolean checkPartialSolution() {
+        return counter(OffHeapBoardStore.MISMATCHES) == 0;
+    }
+
+    /**
+     * Checks if all cells on the current board are filled with non-zero values.
+     *
+     * @return {@code true} if all cells are filled, {@code false} otherwise.
+     */
+    public boolean allCellsFilled() {
+        return getFilledCount() == geometry.cellCount;
+    }
+
+    /**
+     * Checks if any row, column or box on the current board contains the same digit more than once.
+     *
+     * @return {@code true} if the board breaks a Sudoku rule, {@code false} otherwise.
+     */
+    public boolean hasConflicts() {
+        return counter(OffHeapBoardStore.CONFLICTS) > 0;
+    }
+
+    /**
+     * Returns the number of cells on the current board that hold a value.
+     *
+     * @return the number of filled cells.
+     */
+    public int getFilledCount() {
+        return counter(OffHeapBoardStore.FILLED);
+    }
+
+    /**
+     * Returns the flat index of a cell. Unlike the arrays of a {@code SudokuBoard}, a slab
+     * does not stop an index that is out of range, so it is checked here.
+     */
+    private int cellOf(int row, int col) {
+        if (row < 0 || row >= geometry.size || col < 0 || col >= geometry.size) {
+            throw new IndexOutOfBoundsException("Cell out of range: (" + row + ", " + col + ")");
+        }
+        return geometry.indexOf(row, col);
+    }
+
+    /**
+     * Rebuilds the counters of the slot from its values.
+     */
+    void recount() {
+        for (int offset = OffHeapBoardStore.FILLED; offset < OffHeapBoardStore.HEADER_SIZE; offset += Short.BYTES) {
+            slab.putShort(base + offset, (short) 0);
+        }
+        int counts = base + store.countsOffset;
+        for (int unitDigit = 0; unitDigit < geometry.units.length * geometry.size; unitDigit++) {
+            slab.put(counts + unitDigit, (byte) 0);
+        }
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            track(cell, 0, slab.get(base + store.valuesOffset + cell));
+        }
+    }
+
+    private void track(int cell, int oldVal, int newVal) {
+        BoardCounters.track(geometry, counters, cell, slab.get(base + store.solutionOffset + cell), oldVal, newVal);
+    }
+
+    private int counter(int offset) {
+        return slab.getShort(base + offset);
+    }
+
+    private void addToCounter(int offset, int delta) {
+        slab.putShort(base + offset, (short) (slab.getShort(base + offset) + delta));
+    }
+
+    /**
+     * The counters of the bound board, kept in its slot.
+     */
+    private final class SlotCounters implements BoardCounters {
+
+        @Override
+        public void addFilled(int delta) {
+            addToCounter(OffHeapBoardStore.FILLED, delta);
+        }
+
+        @Override
+        public void addMismatches(int delta) {
+            addToCounter(OffHeapBoardStore.MISMATCHES, delta);
+        }
+
+        @Override
+        public void addConflicts(int delta) {
+            addToCounter(OffHeapBoardStore.CONFLICTS, delta);
+        }
+
+        @Override
+        public int addToUnit(int unit, int val, int delta) {
+            int index = base + store.countsOffset + unit * geometry.size + val - 1;
+            int count = slab.get(index) + delta;
+            slab.put(index, (byte) count);
+            return count;
+        }
+    }
+}
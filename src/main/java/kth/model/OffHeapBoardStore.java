@@ -0,0 +1,268 @@
+package kth.model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * The {@code OffHeapBoardStore} class keeps any number of boards of one geometry outside the
+ * Java heap, so that the number of resident games does not change the work of the garbage
+ * collector. The memory is taken in slabs of direct buffers; every board lives in a
+ * fixed-size slot of a slab and is addressed by an {@code int} handle.
+ * <p>
+ * Layout of a slot (multi-byte values in native byte order):
+ * <pre>
+ *   flags          4 bytes   bit 0: the slot holds a board
+ *   filled         2 bytes   number of cells holding a value
+ *   mismatches     2 bytes   number of filled cells that differ from the solution
+ *   conflicts      2 bytes   number of repeated digits in rows, columns and boxes
+ *   (padding)      6 bytes
+ *   values         one byte per cell
+ *   givens         one byte per cell, 0 for the editable cells
+ *   solution       one byte per cell
+ *   digit counts   one byte per digit and unit, as kept by {@code SudokuBoard}
+ * </pre>
+ * The counters are updated on every change, so the checks of a board take constant time as
+ * they do on a {@code SudokuBoard}. A 9x9 board takes a slot of 504 bytes.
+ * <p>
+ * Boards are read and changed through an {@link OffHeapBoard}, a flyweight view that is
+ * bound to one handle at a time and works directly on the slot. Allocating and freeing slots
+ * is thread-safe; a slot itself must only be used by one thread at a time, for example while
+ * holding the lock of the game it belongs to.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class OffHeapBoardStore {
+
+    public static final int DEFAULT_SLAB_SIZE = 1 << 22;
+
+    static final int FLAGS = 0;
+    static final int FILLED = 4;
+    static final int MISMATCHES = 6;
+    static final int CONFLICTS = 8;
+    static final int HEADER_SIZE = 16;
+    static final int FLAG_IN_USE = 1;
+
+    final SudokuGeometry geometry;
+    final int slotSize;
+    final int valuesOffset;
+    final int givensOffset;
+    final int solutionOffset;
+    final int countsOffset;
+    private final int slotShift;
+    private final int slotMask;
+    // Only ever grows, and is replaced rather than changed, so it can be read without the lock
+    private volatile ByteBuffer[] slabs = new ByteBuffer[0];
+
+    // Guarded by this: the handles of freed slots, used before new slots are taken
+    private int[] freeHandles = new int[64];
+    private int freeCount;
+    private int nextHandle;
+    private int liveCount;
+
+    /**
+     * Constructs an empty store for boards of the given geometry with slabs of
+     * {@link #DEFAULT_SLAB_SIZE} bytes.
+     *
+     * @param geometry the geometry of the boards.
+     */
+    public OffHeapBoardStore(SudokuGeometry geometry) {
+        this(geometry, DEFAULT_SLAB_SIZE);
+    }
+
+    /**
+     * Constructs an empty store for boards of the given geometry. No memory is taken until
+     * the first board is added.
+     *
+     * @param geometry the geometry of the boards.
+     * @param slabSize the number of bytes taken from the operating system at a time; rounded
+     *                 down so that a slab holds a power of two number of slots.
+     * @throws IllegalArgumentException if a slab cannot hold a single slot.
+     */
+    public OffHeapBoardStore(SudokuGeometry geometry, int slabSize) {
+        this.geometry = geometry;
+        int cellCount = geometry.cellCount;
+        this.valuesOffset = HEADER_SIZE;
+        this.givensOffset = valuesOffset + cellCount;
+        this.solutionOffset = givensOffset + cellCount;
+        this.countsOffset = solutionOffset + cellCount;
+        this.slotSize = (countsOffset + geometry.units.length * geometry.size + 7) & ~7;
+        int slotsPerSlab = Integer.highestOneBit(Math.max(0, slabSize / slotSize));
+        if (slotsPerSlab == 0) {
+            throw new IllegalArgumentException("Slab size " + slabSize + " is smaller than a slot of "
+                    + slotSize + " bytes.");
+        }
+        this.slotShift = Integer.numberOfTrailingZeros(slotsPerSlab);
+        this.slotMask = slotsPerSlab - 1;
+    }
+
+    /**
+     * Returns the geometry of the boards in the store.
+     *
+     * @return the geometry.
+     */
+    public SudokuGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the number of bytes taken by one board.
+     *
+     * @return the slot size.
+     */
+    public int getSlotSize() {
+        return slotSize;
+    }
+
+    /**
+     * Returns the number of boards in the store.
+     *
+     * @return the number of boards.
+     */
+    public synchronized int size() {
+        return liveCount;
+    }
+
+    /**
+     * Returns the number of bytes taken from the operating system.
+     *
+     * @return the off-heap memory held by the store.
+     */
+    public long getReservedBytes() {
+        return (long) slabs.length * (slotMask + 1) * slotSize;
+    }
+
+    /**
+     * Copies a board into a new slot.
+     *
+     * @param board the board to copy; its geometry must be the geometry of the store.
+     * @return the handle of the new slot.
+     * @throws IllegalArgumentException if the board has another geometry.
+     */
+    public int add(SudokuBoard board) {
+        if (board.getGeometry() != geometry) {
+            throw new IllegalArgumentException("Cannot store a " + board.getSize() + "x" + board.getSize()
+                    + " board in a store for " + geometry.size + "x" + geometry.size + " boards.");
+        }
+        int handle = allocate();
+        ByteBuffer slab = slabOf(handle);
+        int base = baseOf(handle);
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            int row = geometry.rowOf[cell];
+            int col = geometry.colOf[cell];
+            slab.put(base + givensOffset + cell, (byte) (board.isEditable(row, col) ? 0 : board.getInitialVal(row, col)));
+            slab.put(base + solutionOffset + cell, (byte) board.getSolutionVal(row, col));
+            slab.put(base + valuesOffset + cell, (byte) board.getCellVal(row, col));
+        }
+        view().bind(handle).recount();
+        return handle;
+    }
+
+    /**
+     * Creates a {@code SudokuBoard} with the contents of a slot, for the operations that need
+     * the full model, such as hints and saving.
+     *
+     * @param handle the handle of the slot.
+     * @return a new board with the same givens, solution and values.
+     * @throws IllegalArgumentException if the handle does not refer to a board in the store.
+     */
+    public SudokuBoard toBoard(int handle) {
+        OffHeapBoard view = view().bind(handle);
+        int size = geometry.size;
+        int[][] puzzle = new int[size][size];
+        int[][] solution = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                puzzle[row][col] = view.getInitialVal(row, col);
+                solution[row][col] = view.getSolutionVal(row, col);
+            }
+        }
+        SudokuBoard board = new SudokuBoard(puzzle, solution);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                board.setCellVal(row, col, view.getCellVal(row, col));
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Frees the slot of a board, so that it can be reused by a later board.
+     *
+     * @param handle the handle of the slot.
+     * @throws IllegalArgumentException if the handle does not refer to a board in the store.
+     */
+    public synchronized void free(int handle) {
+        checkHandle(handle);
+        slabOf(handle).putInt(baseOf(handle) + FLAGS, 0);
+        if (freeCount == freeHandles.length) {
+            freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+        }
+        freeHandles[freeCount++] = handle;
+        liveCount--;
+    }
+
+    /**
+     * Returns a new view that is not yet bound to a board. A view is cheap, but meant to be
+     * kept and rebound, typically one per thread.
+     *
+     * @return the view.
+     */
+    public OffHeapBoard view() {
+        return new OffHeapBoard(this);
+    }
+
+    /**
+     * Takes a free slot, zeroes it and marks it in use.
+     */
+    private synchronized int allocate() {
+        int handle;
+        if (freeCount > 0) {
+            handle = freeHandles[--freeCount];
+        } else {
+            if (nextHandle == Integer.MAX_VALUE) {
+                throw new IllegalStateException("The store is full.");
+            }
+            handle = nextHandle++;
+            if ((handle >>> slotShift) == slabs.length) {
+                ByteBuffer[] grown = Arrays.copyOf(slabs, slabs.length + 1);
+                grown[slabs.length] = ByteBuffer.allocateDirect((slotMask + 1) * slotSize).order(ByteOrder.nativeOrder());
+                slabs = grown;
+            }
+        }
+        ByteBuffer slab = slabOf(handle);
+        int base = baseOf(handle);
+        for (int offset = 0; offset < slotSize; offset += Long.BYTES) {
+            slab.putLong(base + offset, 0L);
+        }
+        slab.putInt(base + FLAGS, FLAG_IN_USE);
+        liveCount++;
+        return handle;
+    }
+
+    /**
+     * Returns the slab holding a slot. Slabs are only added, never removed, so a handle that
+     * was returned by {@link #add} always finds its slab.
+     */
+    ByteBuffer slabOf(int handle) {
+        return slabs[handle >>> slotShift];
+    }
+
+    /**
+     * Returns the offset of a slot within its slab.
+     */
+    int baseOf(int handle) {
+        return (handle & slotMask) * slotSize;
+    }
+
+    /**
+     * Checks that a handle refers to a slot holding a board.
+     */
+    void checkHandle(int handle) {
+        if (handle < 0 || (handle >>> slotShift) >= slabs.length
+                || (slabOf(handle).getInt(baseOf(handle) + FLAGS) & FLAG_IN_USE) == 0) {
+            throw new IllegalArgumentException("No board with handle " + handle);
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package kth.model;
+
+import kth.metrics.LatencyHistogram;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The {@code PuzzlePool} class keeps a bounded number of ready puzzles for every difficulty
+ * level, so that starting a new game does not have to wait for a puzzle to be generated.
+ * Taking a puzzle is a lock-free poll of the level's queue. When a level drops below the
+ * low watermark, a background thread refills it up to the high watermark; only when the
+ * pool of a level is empty is a puzzle created on the calling thread. Callers that must not
+ * wait, such as the JavaFX application thread, use {@link #takeAsync} instead, which has the
+ * puzzle created by the background thread ahead of the refills.
+ * <p>
+ * The pool counts hits (puzzles taken from the pool), misses (puzzles taken when the
+ * level's pool was empty, whether they were then created on the calling thread or, for
+ * {@code takeAsync}, on the background thread) and the time needed to create every puzzle
+ * on the background thread.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class PuzzlePool implements AutoCloseable {
+
+    public static final int DEFAULT_LOW_WATERMARK = 2;
+    public static final int DEFAULT_HIGH_WATERMARK = 6;
+
+    private final Function<SudokuUtilities.SudokuLevel, int[][][]> source;
+    private final int lowWatermark;
+    private final int highWatermark;
+    private final Level[] levels;
+    private final ExecutorService refiller;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LatencyHistogram refillLatency = new LatencyHistogram();
+
+    /**
+     * The ready puzzles of one difficulty level. The queue size is counted separately,
+     * because {@code ConcurrentLinkedQueue.size()} walks the whole queue.
+     */
+    private static final class Level {
+        private final ConcurrentLinkedQueue<int[][][]> puzzles = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean refilling = new AtomicBoolean();
+        // Callers of takeAsync that found the level empty, served before the queue is refilled
+        private final ConcurrentLinkedQueue<CompletableFuture<int[][][]>> waiting = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Constructs a pool with the default watermarks that generates its puzzles with
+     * {@code SudokuUtilities.generateSudokuMatrix}.
+     */
+    public PuzzlePool() {
+        this(SudokuUtilities::generateSudokuMatrix, DEFAULT_LOW_WATERMARK, DEFAULT_HIGH_WATERMARK);
+    }
+
+    /**
+     * Constructs a pool that takes its puzzles from the given source. The source is called
+     * from the background thread and, on a miss, from the thread taking the puzzle, so it
+     * must be thread-safe.
+     *
+     * @param source creates a puzzle of a level, in the 3D matrix format used by {@code SudokuUtilities}.
+     * @param lowWatermark the number of ready puzzles below which a level is refilled.
+     * @param highWatermark the number of ready puzzles a refill stops at.
+     * @throws IllegalArgumentException if the watermarks are negative or the low watermark
+     *                                  is above the high watermark.
+     */
+    public PuzzlePool(Function<SudokuUtilities.SudokuLevel, int[][][]> source, int lowWatermark, int highWatermark) {
+        if (lowWatermark < 0 || highWatermark < 1 || lowWatermark > highWatermark) {
+            throw new IllegalArgumentException("Invalid watermarks: " + lowWatermark + ", " + highWatermark);
+        }
+        this.source = source;
+        this.lowWatermark = lowWatermark;
+        this.highWatermark = highWatermark;
+        this.levels = new Level[SudokuUtilities.SudokuLevel.values().length];
+        for (int level = 0; level < levels.length; level++) {
+            levels[level] = new Level();
+        }
+        this.refiller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sudoku-puzzle-pool");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts filling every level up to the high watermark in the background.
+     */
+    public void prefill() {
+        for (SudokuUtilities.SudokuLevel level : SudokuUtilities.SudokuLevel.values()) {
+            scheduleRefill(level);
+        }
+    }
+
+    /**
+     * Returns a puzzle of the given level. The puzzle is taken from the pool if one is
+     * ready and created on the calling thread otherwise; in both cases a refill is started
+     * if the level has dropped below the low watermark.
+     *
+     * @param level the difficulty level.
+     * @return A 3D integer array where:
+     *         - [row][col][0] contains the initial puzzle values, with '0' representing an empty cell.
+     *         - [row][col][1] contains the solved values.
+     * @throws IllegalArgumentException if the level is {@code null}.
+     */
+    public int[][][] take(SudokuUtilities.SudokuLevel level) {
+        int[][][] puzzle = poll(level);
+        if (puzzle == null) {
+            misses.increment();
+            puzzle = source.apply(level);
+        }
+        return puzzle;
+    }
+
+    /**
+     * Returns a puzzle of the given level without creating it on the calling thread. If a
+     * puzzle is ready, the returned future is already completed with it; otherwise the
+     * puzzle is created by the background thread and the future is completed there, before
+     * the level is refilled.
+     *
+     * @param level the difficulty level.
+     * @return the future puzzle, in the format returned by {@link #take}; it is cancelled if
+     *         the pool is closed before the puzzle is created.
+     * @throws IllegalArgumentException if the level is {@code null}.
+     */
+    public CompletableFuture<int[][][]> takeAsync(SudokuUtilities.SudokuLevel level) {
+        int[][][] puzzle = poll(level);
+        if (puzzle != null) {
+            return CompletableFuture.completedFuture(puzzle);
+        }
+        misses.increment();
+        CompletableFuture<int[][][]> future = new CompletableFuture<>();
+        levels[level.ordinal()].waiting.add(future);
+        scheduleRefill(level);
+        if (refiller.isShutdown()) {
+            future.cancel(false);
+        }
+        return future;
+    }
+
+    /**
+     * Takes a ready puzzle of the level, starting a refill if the level has dropped below
+     * the low watermark or is empty.
+     *
+     * @return the puzzle, or {@code null} if the level is empty.
+     */
+    private int[][][] poll(SudokuUtilities.SudokuLevel level) {
+        if (level == null) throw new IllegalArgumentException("Invalid difficulty level: " + level);
+        Level pool = levels[level.ordinal()];
+        int[][][] puzzle = pool.puzzles.poll();
+        if (puzzle != null) {
+            pool.size.decrementAndGet();
+            hits.increment();
+        }
+        if (pool.size.get() < lowWatermark || puzzle == null) {
+            scheduleRefill(level);
+        }
+        return puzzle;
+    }
+
+    /**
+     * Returns the number of ready puzzles of a level.
+     *
+     * @param level the difficulty level.
+     * @return the number of ready puzzles.
+     */
+    public int size(SudokuUtilities.SudokuLevel level) {
+        return levels[level.ordinal()].size.get();
+    }
+
+    /**
+     * Returns the number of puzzles that were taken from the pool.
+     *
+     * @return the number of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of puzzles taken when the level's pool was empty, by
+     * {@link #take} or {@link #takeAsync}.
+     *
+     * @return the number of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the histogram of the time, in nanoseconds, needed to create each puzzle on
+     * the background thread, whether it was added to the pool or handed to a waiting caller.
+     *
+     * @return the refill latency histogram.
+     */
+    public LatencyHistogram getRefillLatency() {
+        return refillLatency;
+    }
+
+    /**
+     * Stops refilling and cancels the puzzles still waited for. Puzzles that are already in
+     * the pool can still be taken.
+     */
+    @Override
+    public void close() {
+        refiller.shutdownNow();
+        for (Level pool : levels) {
+            for (CompletableFuture<int[][][]> waiter; (waiter = pool.waiting.poll()) != null; ) {
+                waiter.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Submits a refill of the level unless one is already pending.
+     */
+    private void scheduleRefill(SudokuUtilities.SudokuLevel level) {
+        Level pool = levels[level.ordinal()];
+        if (refiller.isShutdown() || !pool.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        submitRefill(level, pool);
+    }
+
+    /**
+     * Submits a task that creates one puzzle of the level and then submits the next one.
+     * Creating one puzzle per task lets the levels take turns on the background thread, so
+     * a caller waiting for a puzzle is not held up by the refill of another level.
+     */
+    private void submitRefill(SudokuUtilities.SudokuLevel level, Level pool) {
+        try {
+            refiller.execute(() -> {
+                if (needsPuzzle(pool, highWatermark) && !Thread.currentThread().isInterrupted()) {
+                    long start = System.nanoTime();
+                    int[][][] puzzle;
+                    try {
+                        puzzle = source.apply(level);
+                    } catch (RuntimeException e) {
+                        pool.refilling.set(false);
+                        CompletableFuture<int[][][]> waiter = pool.waiting.poll();
+                        if (waiter != null) {
+                            waiter.completeExceptionally(e);
+                        }
+                        throw e;
+                    }
+                    refillLatency.record(System.nanoTime() - start);
+                    CompletableFuture<int[][][]> waiter = pool.waiting.poll();
+                    if (waiter == null || !waiter.complete(puzzle)) {
+                        pool.puzzles.add(puzzle);
+                        pool.size.incrementAndGet();
+                    }
+                    submitRefill(level, pool);
+                    return;
+                }
+                pool.refilling.set(false);
+                // Puzzles taken while the flag was still set did not start a refill of their own
+                if (needsPuzzle(pool, lowWatermark)) {
+                    scheduleRefill(level);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pool.refilling.set(false);  // The pool was closed
+        }
+    }
+
+    /**
+     * Returns whether a caller waits for a puzzle of the level or the level holds fewer
+     * puzzles than the given watermark.
+     */
+    private static boolean needsPuzzle(Level pool, int watermark) {
+        return !pool.waiting.isEmpty() || pool.size.get() < watermark;
+    }
+}
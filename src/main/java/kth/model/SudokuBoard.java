@@ -1,20 +1,77 @@
 package kth.model;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * The {@code SudokuBoard} class represents the state of the Sudoku puzzle,
  * including both the current board and the solution board. It provides methods
  * to manipulate and check the state of the board, such as verifying whether
  * the puzzle is solved or resetting to its initial state.
+ * <p>
+ * The board is stored in packed form: one byte per cell for the current values, the
+ * givens and the solution, and one bit per cell for editability. A board therefore
+ * takes a few hundred bytes and no per-cell objects.
+ * <p>
+ * The number of filled cells, the number of filled cells that differ from the solution
+ * and the occurrences of every digit in every row, column and box are updated on each
+ * change, so all checks of the board state take constant time. The empty cells are kept
+ * in an indexed set, so an empty cell can be picked in constant time.
+ * <p>
+ * Every empty cell also has a candidate mask, the pencil marks of the cell: bit
+ * {@code d - 1} is set when digit {@code d} does not occur in the cell's row, column or
+ * box. Changing a cell only updates the masks of its peers, 20 on the standard board.
+ * <p>
+ * The box size is a parameter of the board: it is taken from the size of the arrays the
+ * board is built from, and boards from 4x4 up to 25x25 are supported. All lookup tables
+ * come from the shared {@link SudokuGeometry} of that size.
+ * <p>
+ * Every change of the values is reported to the registered {@link BoardListener}s: single
+ * moves as primitive events, and resets and newly loaded games as one {@link BoardChangeSet}.
+ * Loading a game replaces the contents of the board in place, so listeners stay attached.
  *
  * @author Majd & Marvin
  * @version 1.0
  */
 public class SudokuBoard implements Serializable {
-    private final SudokuCell[][] board;
-    private final int[][] boardSolution;
-    private final SudokuCell[][] initialBoard;
+    private static final long serialVersionUID = 2298531744136360626L;
+
+    // Saved games use the field layout of the original SudokuCell based board
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("board", SudokuCell[][].class),
+            new ObjectStreamField("boardSolution", int[][].class),
+            new ObjectStreamField("initialBoard", SudokuCell[][].class)
+    };
+
+    private SudokuGeometry geometry;
+
+    private byte[] values;
+    private byte[] givens;
+    private byte[] solution;
+    private long[] editable;
+
+    private int filledCount;
+    private int mismatchCount;
+    private int conflictCount;
+    private byte[] unitDigitCounts;
+    private int[] unitMasks;
+    private BoardCounters counters;
+
+    // Sparse set of the empty cells: emptyCells[0..emptyCount) and each cell's position in it
+    private int[] emptyCells;
+    private int[] emptyPositions;
+    private int emptyCount;
+
+    private int[] candidates;
+
+    // Not serialized: listeners are attached to the board instance, not to the game
+    private BoardListener[] listeners;
+    private BoardChangeSet changes;
 
     /**
      * Constructs a new {@code SudokuBoard} with the given puzzle and solution boards.
@@ -22,34 +79,315 @@ public class SudokuBoard implements Serializable {
      *
      * @param board the initial puzzle board as a 2D array of integers.
      * @param boardSolution the solution board for the puzzle.
+     * @throws IllegalArgumentException if the boards are not square boards of a supported size
+     *         or hold a value outside the range 0 to the grid size.
      */
     public SudokuBoard(int[][] board, int[][] boardSolution) {
-        this.boardSolution = boardSolution;
-
-        // Initialize the current board and the initial board with SudokuCell objects
-        this.board = new SudokuCell[9][9];
-        this.initialBoard = new SudokuCell[9][9];
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                boolean editable = board[row][col] == 0; // If the value is 0, it's editable
-                this.board[row][col] = new SudokuCell(board[row][col], editable);
-                this.initialBoard[row][col] = new SudokuCell(board[row][col], editable);
+        allocate(SudokuGeometry.ofSize(board.length));
+        for (int row = 0; row < geometry.size; row++) {
+            for (int col = 0; col < geometry.size; col++) {
+                int cell = geometry.indexOf(row, col);
+                givens[cell] = checkValue(board[row][col]);
+                solution[cell] = checkValue(boardSolution[row][col]);
+                if (board[row][col] == 0) {  // If the value is 0, it's editable
+                    editable[cell >>> 6] |= 1L << cell;
+                }
+            }
+        }
+        System.arraycopy(givens, 0, values, 0, geometry.cellCount);
+        recount();
+    }
+
+    /**
+     * Constructs a new {@code SudokuBoard} for the given puzzle and computes its solution
+     * with a {@link SudokuSolver}, so that imported puzzles do not have to carry a solution.
+     *
+     * @param board the initial puzzle board as a 2D array of integers.
+     * @throws IllegalArgumentException if the puzzle has no solution.
+     */
+    public SudokuBoard(int[][] board) {
+        this(board, solveOrThrow(board));
+    }
+
+    /**
+     * Solves the given puzzle, failing if it cannot be solved.
+     *
+     * @param board the puzzle to solve.
+     * @return the solution of the puzzle.
+     */
+    private static int[][] solveOrThrow(int[][] board) {
+        int[][] solution = new SudokuSolver(SudokuGeometry.ofSize(board.length)).solve(board);
+        if (solution == null) {
+            throw new IllegalArgumentException("The puzzle has no solution.");
+        }
+        return solution;
+    }
+
+    /**
+     * Allocates the packed arrays for an empty board of the given geometry.
+     */
+    private void allocate(SudokuGeometry geometry) {
+        this.geometry = geometry;
+        this.values = new byte[geometry.cellCount];
+        this.givens = new byte[geometry.cellCount];
+        this.solution = new byte[geometry.cellCount];
+        this.editable = new long[(geometry.cellCount + 63) >>> 6];
+        this.unitDigitCounts = new byte[geometry.units.length * geometry.size];
+        this.unitMasks = new int[geometry.units.length];
+        this.counters = new Counters();
+        this.emptyCells = new int[geometry.cellCount];
+        this.emptyPositions = new int[geometry.cellCount];
+        this.candidates = new int[geometry.cellCount];
+        this.listeners = new BoardListener[0];
+        this.changes = new BoardChangeSet(geometry.cellCount);
+    }
+
+    /**
+     * Returns the geometry of the board, which holds its size and lookup tables.
+     *
+     * @return the geometry of the board.
+     */
+    public SudokuGeometry getGeometry() {
+        return geometry;
+    }
+
+    /**
+     * Returns the number of rows (and columns) on the board, which is also the largest value.
+     *
+     * @return the size of the board.
+     */
+    public int getSize() {
+        return geometry.size;
+    }
+
+    /**
+     * Registers a listener that is told about every change of the values on the board.
+     *
+     * @param listener the listener to add.
+     */
+    public void addBoardListener(BoardListener listener) {
+        BoardListener[] grown = Arrays.copyOf(listeners, listeners.length + 1);
+        grown[listeners.length] = listener;
+        listeners = grown;
+    }
+
+    /**
+     * Removes a listener added with {@link #addBoardListener}. Does nothing if it was not added.
+     *
+     * @param listener the listener to remove.
+     */
+    public void removeBoardListener(BoardListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                BoardListener[] shrunk = new BoardListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, shrunk, 0, i);
+                System.arraycopy(listeners, i + 1, shrunk, i, shrunk.length - i);
+                listeners = shrunk;
+                return;
             }
         }
     }
 
+    /**
+     * Checks that a value fits on the board and converts it to its packed form.
+     *
+     * @param val the value to check.
+     * @return the value as a byte.
+     * @throws IllegalArgumentException if the value is outside the range 0 to the grid size.
+     */
+    private byte checkValue(int val) {
+        if (val < 0 || val > geometry.size) {
+            throw new IllegalArgumentException("Invalid cell value: " + val);
+        }
+        return (byte) val;
+    }
+
     /**
      * Resets the board to its initial state.
      */
     public void resetToInitialBoard() {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                board[row][col].setValue(initialBoard[row][col].getValue());
-                board[row][col].setEditable(initialBoard[row][col].isEditable());
+        changes.begin(BoardListener.RESET);
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            if (values[cell] != givens[cell]) {
+                changes.add(cell, values[cell], givens[cell]);
+            }
+        }
+        System.arraycopy(givens, 0, values, 0, geometry.cellCount);
+        recount();
+        fireBoardChanged();
+    }
+
+    /**
+     * Replaces the game on this board with a new puzzle and its solution. The board is
+     * changed in place, so registered listeners see the new puzzle as one change set.
+     *
+     * @param board the new puzzle as a 2D array of integers.
+     * @param boardSolution the solution of the new puzzle.
+     * @throws IllegalArgumentException if the puzzle is not of the size of this board or
+     *         holds a value outside the range 0 to the grid size.
+     */
+    public void loadPuzzle(int[][] board, int[][] boardSolution) {
+        replaceWith(new SudokuBoard(board, boardSolution), BoardListener.NEW_PUZZLE);
+    }
+
+    /**
+     * Replaces the game on this board with a copy of another board, such as a loaded or
+     * restored game. The board is changed in place, so registered listeners see the new
+     * game as one change set.
+     *
+     * @param other the board to copy.
+     * @throws IllegalArgumentException if the other board is not of the size of this board.
+     */
+    public void copyFrom(SudokuBoard other) {
+        replaceWith(other, BoardListener.LOAD);
+    }
+
+    /**
+     * Copies the values, givens, solution and editability of another board, recording every
+     * cell whose value or given state changes, and reports the changes.
+     */
+    private void replaceWith(SudokuBoard other, int cause) {
+        if (other.geometry != geometry) {
+            throw new IllegalArgumentException("Cannot replace a " + geometry.size + "x" + geometry.size
+                    + " board with a " + other.geometry.size + "x" + other.geometry.size + " board.");
+        }
+        changes.begin(cause);
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            if (values[cell] != other.values[cell] || givens[cell] != other.givens[cell]
+                    || isEditable(cell) != other.isEditable(cell)) {
+                changes.add(cell, values[cell], other.values[cell]);
+            }
+        }
+        System.arraycopy(other.values, 0, values, 0, geometry.cellCount);
+        System.arraycopy(other.givens, 0, givens, 0, geometry.cellCount);
+        System.arraycopy(other.solution, 0, solution, 0, geometry.cellCount);
+        System.arraycopy(other.editable, 0, editable, 0, editable.length);
+        recount();
+        fireBoardChanged();
+    }
+
+    private void fireBoardChanged() {
+        if (changes.size() == 0) {
+            return;
+        }
+        for (BoardListener listener : listeners) {
+            listener.boardChanged(this, changes);
+        }
+    }
+
+    /**
+     * Rebuilds the counters, unit masks, empty cells and candidates from the current values.
+     */
+    private void recount() {
+        filledCount = 0;
+        mismatchCount = 0;
+        conflictCount = 0;
+        Arrays.fill(unitDigitCounts, (byte) 0);
+        Arrays.fill(unitMasks, 0);
+        emptyCount = geometry.cellCount;
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            emptyCells[cell] = cell;
+            emptyPositions[cell] = cell;
+        }
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            track(cell, 0, values[cell]);
+        }
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            candidates[cell] = values[cell] == 0 ? freeDigits(cell) : 0;
+        }
+    }
+
+    /**
+     * Updates the counters, unit masks and empty cells for a cell that changes from
+     * {@code oldVal} to {@code newVal}.
+     */
+    private void track(int cell, int oldVal, int newVal) {
+        if (oldVal == 0 && newVal != 0) {
+            removeEmpty(cell);
+        } else if (oldVal != 0 && newVal == 0) {
+            addEmpty(cell);
+        }
+        BoardCounters.track(geometry, counters, cell, solution[cell], oldVal, newVal);
+    }
+
+    private void addEmpty(int cell) {
+        emptyCells[emptyCount] = cell;
+        emptyPositions[cell] = emptyCount++;
+    }
+
+    private void removeEmpty(int cell) {
+        // Move the last empty cell into the slot of the removed one
+        int last = emptyCells[--emptyCount];
+        int position = emptyPositions[cell];
+        emptyCells[position] = last;
+        emptyPositions[last] = position;
+    }
+
+    /**
+     * Returns the number of empty cells.
+     */
+    int emptyCount() {
+        return emptyCount;
+    }
+
+    /**
+     * Returns the empty cell at the given position of the empty cell set, in no particular order.
+     */
+    int emptyCellAt(int position) {
+        return emptyCells[position];
+    }
+
+    /**
+     * Updates the candidates of a cell that changed from {@code oldVal} to {@code newVal}
+     * and of its peers. Must be called after the unit masks have been updated.
+     */
+    private void updateCandidates(int cell, int oldVal, int newVal) {
+        candidates[cell] = newVal == 0 ? freeDigits(cell) : 0;
+        int oldBit = oldVal == 0 ? 0 : 1 << (oldVal - 1);
+        int newBit = newVal == 0 ? 0 : 1 << (newVal - 1);
+        for (int peer : geometry.peers[cell]) {
+            if (values[peer] != 0) {
+                continue;
+            }
+            // The old digit is only a candidate again if no other cell of the peer's units holds it
+            int mask = candidates[peer] & ~newBit;
+            if (oldBit != 0 && (freeDigits(peer) & oldBit) != 0) {
+                mask |= oldBit;
             }
+            candidates[peer] = mask;
         }
     }
 
+    /**
+     * Returns the digits, as a bit mask, that do not occur in the row, column or box of a cell.
+     */
+    private int freeDigits(int cell) {
+        return geometry.allDigits & ~(unitMasks[geometry.rowOf[cell]]
+                | unitMasks[geometry.size + geometry.colOf[cell]]
+                | unitMasks[2 * geometry.size + geometry.boxOf[cell]]);
+    }
+
+    /**
+     * Returns the candidate mask of a cell by its flat index.
+     */
+    int candidatesOf(int cell) {
+        return candidates[cell];
+    }
+
+    /**
+     * Returns the value of a cell by its flat index.
+     */
+    int valueAt(int cell) {
+        return values[cell];
+    }
+
+    /**
+     * Returns the solution value of a cell by its flat index.
+     */
+    int solutionAt(int cell) {
+        return solution[cell];
+    }
+
     /**
      * Returns the initial state of the board as a 2D array of integers.
      * This method is useful when you need to get the initial puzzle state without resetting the board.
@@ -57,24 +395,61 @@ public class SudokuBoard implements Serializable {
      * @return a 2D array representing the initial state of the board.
      */
     public int[][] getInitialBoard() {
-        int[][] initialBoardValues = new int[9][9];
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                initialBoardValues[row][col] = initialBoard[row][col].getValue();
+        int[][] initialBoardValues = new int[geometry.size][geometry.size];
+        for (int row = 0; row < geometry.size; row++) {
+            for (int col = 0; col < geometry.size; col++) {
+                initialBoardValues[row][col] = givens[geometry.indexOf(row, col)];
             }
         }
         return initialBoardValues;
     }
 
     /**
-     * Sets the value of a specific cell on the current board.
+     * Returns the value of a specific cell in the initial puzzle.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return the initial value of the specified cell (0 for empty).
+     */
+    public int getInitialVal(int row, int col) {
+        return givens[geometry.indexOf(row, col)];
+    }
+
+    /**
+     * Sets the value of a specific cell on the current board, as a move of the player.
+     * Cells that are part of the initial puzzle are not changed.
      *
      * @param row the row index of the cell.
      * @param col the column index of the cell.
      * @param val the value to set in the cell.
+     * @throws IllegalArgumentException if the value is outside the range 0 to the grid size.
      */
     public void setCellVal(int row, int col, int val) {
-        board[row][col].setValue(val);
+        setCellVal(row, col, val, BoardListener.PLAYER);
+    }
+
+    /**
+     * Sets the value of a specific cell on the current board and reports the change to the
+     * listeners with the given cause. Cells that are part of the initial puzzle are not changed.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @param val the value to set in the cell.
+     * @param cause why the cell changes, one of the cause constants of {@link BoardListener}.
+     * @throws IllegalArgumentException if the value is outside the range 0 to the grid size.
+     */
+    public void setCellVal(int row, int col, int val, int cause) {
+        int cell = geometry.indexOf(row, col);
+        byte packed = checkValue(val);
+        if (isEditable(cell) && values[cell] != packed) {
+            int oldVal = values[cell];
+            track(cell, oldVal, packed);
+            values[cell] = packed;
+            updateCandidates(cell, oldVal, packed);
+            for (BoardListener listener : listeners) {
+                listener.cellChanged(this, cell, oldVal, packed, cause);
+            }
+        }
     }
 
     /**
@@ -85,7 +460,36 @@ public class SudokuBoard implements Serializable {
      * @return the value of the specified cell.
      */
     public int getCellVal(int row, int col) {
-        return board[row][col].getValue();
+        return values[geometry.indexOf(row, col)];
+    }
+
+    /**
+     * Returns whether a specific cell can be changed by the player, that is whether it
+     * was empty in the initial puzzle.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return {@code true} if the cell is editable, {@code false} otherwise.
+     */
+    public boolean isEditable(int row, int col) {
+        return isEditable(geometry.indexOf(row, col));
+    }
+
+    private boolean isEditable(int cell) {
+        return (editable[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    /**
+     * Returns the candidates of a specific cell: the digits that do not occur in its row,
+     * column or box.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return a bit mask where bit {@code d - 1} is set if digit {@code d} is a candidate,
+     *         or 0 if the cell holds a value.
+     */
+    public int getCandidates(int row, int col) {
+        return candidates[geometry.indexOf(row, col)];
     }
 
     /**
@@ -95,14 +499,7 @@ public class SudokuBoard implements Serializable {
      * @return {@code true} if the current board matches the solution, {@code false} otherwise.
      */
     public boolean isSolved() {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                if (board[row][col].getValue() != boardSolution[row][col]) {
-                    return false;
-                }
-            }
-        }
-        return true;
+        return filledCount == geometry.cellCount && mismatchCount == 0;
     }
 
     /**
@@ -112,18 +509,7 @@ public class SudokuBoard implements Serializable {
      * @return {@code true} if all filled cells have the correct values, {@code false} otherwise.
      */
     public boolean checkPartialSolution() {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                int currentVal = board[row][col].getValue();  // Get the value from the current board
-                if (currentVal != 0) {  // Only check non-empty cells
-                    int correctVal = getSolutionVal(row, col);  // Get the correct solution value
-                    if (currentVal != correctVal) {
-                        return false;  // Return false if any filled value is incorrect
-                    }
-                }
-            }
-        }
-        return true;  // Return true if all filled values are correct
+        return mismatchCount == 0;
     }
 
     /**
@@ -132,14 +518,25 @@ public class SudokuBoard implements Serializable {
      * @return {@code true} if all cells are filled, {@code false} otherwise.
      */
     public boolean allCellsFilled() {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                if (board[row][col].getValue() == 0) {  // Check for empty cells
-                    return false;  // Return false if there is at least one empty cell
-                }
-            }
-        }
-        return true;  // All cells are filled
+        return filledCount == geometry.cellCount;
+    }
+
+    /**
+     * Checks if any row, column or box on the current board contains the same digit more than once.
+     *
+     * @return {@code true} if the board breaks a Sudoku rule, {@code false} otherwise.
+     */
+    public boolean hasConflicts() {
+        return conflictCount > 0;
+    }
+
+    /**
+     * Returns the number of cells on the current board that hold a value.
+     *
+     * @return the number of filled cells.
+     */
+    public int getFilledCount() {
+        return filledCount;
     }
 
     /**
@@ -148,17 +545,15 @@ public class SudokuBoard implements Serializable {
      */
     public void printBoard() {
         System.out.println("Current Board:");
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                System.out.print(board[row][col].getValue() + " ");
-            }
-            System.out.println();
-        }
-
+        printGrid(values);
         System.out.println("Solution Board:");
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                System.out.print(boardSolution[row][col] + " ");
+        printGrid(solution);
+    }
+
+    private void printGrid(byte[] grid) {
+        for (int row = 0; row < geometry.size; row++) {
+            for (int col = 0; col < geometry.size; col++) {
+                System.out.print(grid[geometry.indexOf(row, col)] + " ");
             }
             System.out.println();
         }
@@ -172,7 +567,7 @@ public class SudokuBoard implements Serializable {
      * @return the solution value for the specified cell.
      */
     public int getSolutionVal(int row, int col) {
-        return boardSolution[row][col];
+        return solution[geometry.indexOf(row, col)];
     }
 
     /**
@@ -183,6 +578,98 @@ public class SudokuBoard implements Serializable {
      * @param val the solution value to set.
      */
     public void setSolutionVal(int row, int col, int val) {
-        boardSolution[row][col] = val;
+        int cell = geometry.indexOf(row, col);
+        byte packed = checkValue(val);
+        if (values[cell] != 0) {
+            mismatchCount += (values[cell] != packed ? 1 : 0) - (values[cell] != solution[cell] ? 1 : 0);
+        }
+        solution[cell] = packed;
+    }
+
+    /**
+     * Writes the board in the field layout of the original {@code SudokuCell} based board,
+     * so that saved games stay readable by every version of the game.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        SudokuCell[][] board = new SudokuCell[geometry.size][geometry.size];
+        SudokuCell[][] initialBoard = new SudokuCell[geometry.size][geometry.size];
+        int[][] boardSolution = new int[geometry.size][geometry.size];
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            int row = geometry.rowOf[cell];
+            int col = geometry.colOf[cell];
+            board[row][col] = new SudokuCell(values[cell], isEditable(cell));
+            initialBoard[row][col] = new SudokuCell(givens[cell], isEditable(cell));
+            boardSolution[row][col] = solution[cell];
+        }
+
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("board", board);
+        fields.put("boardSolution", boardSolution);
+        fields.put("initialBoard", initialBoard);
+        out.writeFields();
+    }
+
+    /**
+     * Reads a board written in the field layout of the original {@code SudokuCell} based
+     * board and packs it.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        SudokuCell[][] board = (SudokuCell[][]) fields.get("board", null);
+        int[][] boardSolution = (int[][]) fields.get("boardSolution", null);
+        SudokuCell[][] initialBoard = (SudokuCell[][]) fields.get("initialBoard", null);
+        if (board == null || boardSolution == null || initialBoard == null) {
+            throw new InvalidObjectException("Incomplete Sudoku board.");
+        }
+
+        try {
+            allocate(SudokuGeometry.ofSize(board.length));
+            for (int cell = 0; cell < geometry.cellCount; cell++) {
+                int row = geometry.rowOf[cell];
+                int col = geometry.colOf[cell];
+                values[cell] = checkValue(board[row][col].getValue());
+                givens[cell] = checkValue(initialBoard[row][col].getValue());
+                solution[cell] = checkValue(boardSolution[row][col]);
+                if (board[row][col].isEditable()) {
+                    editable[cell >>> 6] |= 1L << cell;
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | NullPointerException e) {
+            throw new InvalidObjectException("Invalid Sudoku board: " + e.getMessage());
+        }
+        recount();
+    }
+
+    /**
+     * The counters of the board, kept in its fields. The mask of a unit follows the digits
+     * whose count goes from 0 to 1 and back.
+     */
+    private final class Counters implements BoardCounters {
+
+        @Override
+        public void addFilled(int delta) {
+            filledCount += delta;
+        }
+
+        @Override
+        public void addMismatches(int delta) {
+            mismatchCount += delta;
+        }
+
+        @Override
+        public void addConflicts(int delta) {
+            conflictCount += delta;
+        }
+
+        @Override
+        public int addToUnit(int unit, int val, int delta) {
+            int count = unitDigitCounts[unit * geometry.size + val - 1] += delta;
+            if (count == 0) {
+                unitMasks[unit] &= ~(1 << (val - 1));
+            } else if (count == 1 && delta > 0) {
+                unitMasks[unit] |= 1 << (val - 1);
+            }
+            return count;
+        }
     }
 }
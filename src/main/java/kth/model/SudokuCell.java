@@ -5,11 +5,15 @@ import java.io.Serializable;
 /**
  * Represents a single cell in the Sudoku board. Each cell contains a value
  * and could be extended to include other attributes such as whether it is editable.
+ * {@code SudokuBoard} stores its cells in packed form and uses this class for the
+ * field layout of saved games.
  *
  * @author Majd & Marvin
  * @version 1.0
  */
 public class SudokuCell implements Serializable {
+    private static final long serialVersionUID = -3735965133557828921L;
+
     private int value;
     private boolean editable;
 
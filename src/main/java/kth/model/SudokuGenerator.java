@@ -0,0 +1,177 @@
+package kth.model;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * The {@code SudokuGenerator} class creates new Sudoku puzzles with exactly one solution.
+ * A complete grid is built by a randomized search, after which clues are removed in random
+ * order as long as the puzzle keeps a unique solution. Every candidate puzzle is then rated
+ * by a {@link SudokuRater}, and new candidates are generated until the rating matches the
+ * requested difficulty level or the attempts run out.
+ * <p>
+ * On boards larger than 9x9, minimal puzzles take too long to generate and to play, so
+ * clues are only removed down to a floor that depends on the level, fewer attempts are
+ * made, and every uniqueness check is bounded by a node limit in proportion to the board;
+ * a clue whose removal cannot be checked within the limit is kept.
+ * <p>
+ * A generator reuses its solver and work arrays between puzzles and is not thread-safe;
+ * use one instance per thread.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class SudokuGenerator {
+    // Hard puzzles make up about a third of the minimal puzzles and medium ones about a fifth
+    private static final int MAX_ATTEMPTS = 32;
+    private static final int LARGE_MAX_ATTEMPTS = 4;
+    private static final long NODE_LIMIT_PER_CELL = 1;
+
+    private final SudokuGeometry geometry;
+    private final SudokuSolver solver;
+    private final SudokuRater rater;
+    private final RandomGenerator random;
+    private final boolean large;
+    private final int maxAttempts;
+    private final int[] empty;
+    private final int[] order;
+    private final int[] bestPuzzle;
+    private final int[] bestSolution;
+
+    /**
+     * Constructs a generator for the standard 9x9 board.
+     */
+    public SudokuGenerator() {
+        this(SudokuGeometry.STANDARD, new SplittableRandom());
+    }
+
+    /**
+     * Constructs a generator for boards with the given geometry using the given source of randomness.
+     *
+     * @param geometry the geometry of the boards to generate.
+     * @param random the source of randomness.
+     */
+    public SudokuGenerator(SudokuGeometry geometry, RandomGenerator random) {
+        this.geometry = geometry;
+        this.solver = new SudokuSolver(geometry);
+        this.rater = new SudokuRater(geometry);
+        this.random = random;
+        this.large = geometry.size > SudokuGeometry.STANDARD.size;
+        this.maxAttempts = large ? LARGE_MAX_ATTEMPTS : MAX_ATTEMPTS;
+        if (large) {
+            solver.setNodeLimit(NODE_LIMIT_PER_CELL * geometry.cellCount);
+        }
+        this.empty = new int[geometry.cellCount];
+        this.order = new int[geometry.cellCount];
+        this.bestPuzzle = new int[geometry.cellCount];
+        this.bestSolution = new int[geometry.cellCount];
+        for (int cell = 0; cell < order.length; cell++) {
+            order[cell] = cell;
+        }
+    }
+
+    /**
+     * Generates a new puzzle of the given difficulty level and its solution as flat arrays
+     * of cells. If no puzzle of that level is found within a bounded number of attempts,
+     * the attempt whose rated level came closest is used.
+     *
+     * @param level the requested difficulty level.
+     * @param puzzle the array receiving the puzzle (0 represents an empty cell).
+     * @param solution the array receiving the solution.
+     * @return the rating of the generated puzzle.
+     */
+    public SudokuRater.Rating generate(SudokuUtilities.SudokuLevel level, int[] puzzle, int[] solution) {
+        SudokuRater.Rating best = null;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            generateCandidate(level, puzzle, solution);
+            SudokuRater.Rating rating = rater.rate(puzzle);
+            if (rating.getLevel() == level) {
+                return rating;
+            }
+            if (best == null || distance(rating, level) < distance(best, level)) {
+                best = rating;
+                System.arraycopy(puzzle, 0, bestPuzzle, 0, geometry.cellCount);
+                System.arraycopy(solution, 0, bestSolution, 0, geometry.cellCount);
+            }
+        }
+        System.arraycopy(bestPuzzle, 0, puzzle, 0, geometry.cellCount);
+        System.arraycopy(bestSolution, 0, solution, 0, geometry.cellCount);
+        return best;
+    }
+
+    private static int distance(SudokuRater.Rating rating, SudokuUtilities.SudokuLevel level) {
+        return Math.abs(rating.getLevel().ordinal() - level.ordinal());
+    }
+
+    /**
+     * Generates one unrated puzzle with a unique solution, keeping at least the minimum
+     * number of clues for the level.
+     */
+    private void generateCandidate(SudokuUtilities.SudokuLevel level, int[] puzzle, int[] solution) {
+        while (!solver.solveRandomly(empty, solution, random)) {
+            // The random search ran into its node limit; start over with other choices
+        }
+        System.arraycopy(solution, 0, puzzle, 0, geometry.cellCount);
+
+        // Shuffle the order in which the clues are tried
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+
+        int clues = geometry.cellCount;
+        int minClues = minClues(level);
+        for (int i = 0; i < order.length && clues > minClues; i++) {
+            int cell = order[i];
+            int value = puzzle[cell];
+            puzzle[cell] = 0;
+            if (solver.countSolutions(puzzle, 2) == 1) {
+                clues--;
+            } else {
+                puzzle[cell] = value;  // Removing this clue would allow several solutions
+            }
+        }
+    }
+
+    /**
+     * Generates a new puzzle and its solution in the 3D matrix format used by {@code SudokuUtilities}.
+     *
+     * @param level the requested difficulty level.
+     * @return A 3D integer array where:
+     *         - [row][col][0] contains the initial puzzle values, with '0' representing an empty cell.
+     *         - [row][col][1] contains the solved values.
+     */
+    public int[][][] generateMatrix(SudokuUtilities.SudokuLevel level) {
+        int size = geometry.size;
+        int[] puzzle = new int[geometry.cellCount];
+        int[] solution = new int[geometry.cellCount];
+        generate(level, puzzle, solution);
+
+        int[][][] matrix = new int[size][size][2];
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            matrix[cell / size][cell % size][0] = puzzle[cell];
+            matrix[cell / size][cell % size][1] = solution[cell];
+        }
+        return matrix;
+    }
+
+    /**
+     * Returns the number of clues below which no more clues are removed for a level. Easy
+     * puzzles keep extra clues; for the other levels clues are removed until the puzzle is
+     * minimal and the rating decides the level, except on large boards, where every level
+     * keeps a share of the cells.
+     *
+     * @param level the difficulty level.
+     * @return the minimum number of clues.
+     */
+    private int minClues(SudokuUtilities.SudokuLevel level) {
+        switch (level) {
+            case EASY: return geometry.cellCount * (large ? 5 : 4) / 9;
+            case MEDIUM: return large ? geometry.cellCount / 2 : 0;
+            case HARD: return large ? geometry.cellCount * 4 / 9 : 0;
+            default: throw new IllegalArgumentException("Invalid difficulty level: " + level);
+        }
+    }
+}
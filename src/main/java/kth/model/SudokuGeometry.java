@@ -0,0 +1,205 @@
+package kth.model;
+
+/**
+ * The {@code SudokuGeometry} class holds precomputed index tables for a Sudoku grid
+ * stored as a flat array of cells in row-major order. For every cell it knows the row,
+ * column and box it belongs to, the cells of every unit (row, column or box) and the
+ * peers of every cell, so that the model classes never have to recompute them.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public final class SudokuGeometry {
+
+    /**
+     * The geometry of the standard 9x9 board with 3x3 boxes.
+     */
+    public static final SudokuGeometry STANDARD = new SudokuGeometry(3);
+
+    /** The smallest supported box size, giving a 4x4 board. */
+    public static final int MIN_BOX_SIZE = 2;
+    /** The largest supported box size, giving a 25x25 board; its digits still fit in an {@code int} mask. */
+    public static final int MAX_BOX_SIZE = 5;
+
+    // One geometry per box size, built on first use
+    private static final SudokuGeometry[] geometries = new SudokuGeometry[MAX_BOX_SIZE + 1];
+
+    static {
+        geometries[STANDARD.boxSize] = STANDARD;
+    }
+
+    final int boxSize;
+    final int size;
+    final int cellCount;
+    final int allDigits;
+    final int[] rowOf;
+    final int[] colOf;
+    final int[] boxOf;
+    final int[][] units;
+    final int[][] peers;
+
+    /**
+     * Builds the tables for a board made of {@code boxSize * boxSize} boxes.
+     *
+     * @param boxSize the number of rows (and columns) in one box.
+     */
+    private SudokuGeometry(int boxSize) {
+        this.boxSize = boxSize;
+        this.size = boxSize * boxSize;
+        this.cellCount = size * size;
+        this.allDigits = (1 << size) - 1;
+        this.rowOf = new int[cellCount];
+        this.colOf = new int[cellCount];
+        this.boxOf = new int[cellCount];
+        this.units = new int[3 * size][size];
+
+        int[] unitFill = new int[3 * size];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            int box = (row / boxSize) * boxSize + col / boxSize;
+            rowOf[cell] = row;
+            colOf[cell] = col;
+            boxOf[cell] = box;
+            units[row][unitFill[row]++] = cell;
+            units[size + col][unitFill[size + col]++] = cell;
+            units[2 * size + box][unitFill[2 * size + box]++] = cell;
+        }
+
+        // Every cell sees (size - 1) cells in its row and column and the rest of its box
+        int peerCount = 3 * size - 2 * boxSize - 1;
+        this.peers = new int[cellCount][peerCount];
+        for (int cell = 0; cell < cellCount; cell++) {
+            int fill = 0;
+            for (int other = 0; other < cellCount; other++) {
+                if (other != cell && (rowOf[other] == rowOf[cell] || colOf[other] == colOf[cell]
+                        || boxOf[other] == boxOf[cell])) {
+                    peers[cell][fill++] = other;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the geometry of the board made of {@code boxSize * boxSize} boxes. The tables
+     * of every size are built once and shared.
+     *
+     * @param boxSize the number of rows (and columns) in one box.
+     * @return the geometry.
+     * @throws IllegalArgumentException if the box size is not supported.
+     */
+    public static SudokuGeometry of(int boxSize) {
+        if (boxSize < MIN_BOX_SIZE || boxSize > MAX_BOX_SIZE) {
+            throw new IllegalArgumentException("Unsupported box size: " + boxSize);
+        }
+        synchronized (geometries) {
+            if (geometries[boxSize] == null) {
+                geometries[boxSize] = new SudokuGeometry(boxSize);
+            }
+            return geometries[boxSize];
+        }
+    }
+
+    /**
+     * Returns the geometry of the board with the given number of rows and columns.
+     *
+     * @param size the number of rows (and columns) on the board, the square of the box size.
+     * @return the geometry.
+     * @throws IllegalArgumentException if the size is not the square of a supported box size.
+     */
+    public static SudokuGeometry ofSize(int size) {
+        int boxSize = (int) Math.round(Math.sqrt(size));
+        if (boxSize * boxSize != size) {
+            throw new IllegalArgumentException("Unsupported board size: " + size);
+        }
+        return of(boxSize);
+    }
+
+    /**
+     * Returns the number of rows (and columns) in one box.
+     *
+     * @return the box size.
+     */
+    public int getBoxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the number of rows (and columns) on the board, which is also the largest digit.
+     *
+     * @return the grid size.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the total number of cells on the board.
+     *
+     * @return the number of cells.
+     */
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Returns the flat index of the cell at the given row and column.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @return the flat index of the cell.
+     */
+    public int indexOf(int row, int col) {
+        return row * size + col;
+    }
+
+    /**
+     * Returns the row of the cell at the given flat index.
+     *
+     * @param cell the flat index of the cell.
+     * @return the row index of the cell.
+     */
+    public int rowOf(int cell) {
+        return rowOf[cell];
+    }
+
+    /**
+     * Returns the column of the cell at the given flat index.
+     *
+     * @param cell the flat index of the cell.
+     * @return the column index of the cell.
+     */
+    public int colOf(int cell) {
+        return colOf[cell];
+    }
+
+    /**
+     * Returns the number of peers of every cell, the cells sharing its row, column or box.
+     *
+     * @return the number of peers, 20 on the standard board.
+     */
+    public int getPeerCount() {
+        return peers[0].length;
+    }
+
+    /**
+     * Returns one of the peers of a cell.
+     *
+     * @param cell the flat index of the cell.
+     * @param index the index of the peer, from 0 to {@link #getPeerCount()} - 1.
+     * @return the flat index of the peer.
+     */
+    public int peerOf(int cell, int index) {
+        return peers[cell][index];
+    }
+
+    /**
+     * Returns the box of the cell at the given flat index, counted row by row.
+     *
+     * @param cell the flat index of the cell.
+     * @return the box index of the cell.
+     */
+    public int boxOf(int cell) {
+        return boxOf[cell];
+    }
+}
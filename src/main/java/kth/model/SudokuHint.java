@@ -0,0 +1,81 @@
+package kth.model;
+
+/**
+ * The {@code SudokuHint} class describes one hint: a cell, the value that belongs in it and
+ * the technique that deduces that value from the current board.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public final class SudokuHint {
+    private final int row;
+    private final int col;
+    private final int value;
+    private final SudokuRater.Technique technique;
+
+    /**
+     * Constructs a hint.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @param value the value that belongs in the cell.
+     * @param technique the technique that deduces the value, or {@link SudokuRater.Technique#GUESS}
+     *                  if the value was taken from the solution.
+     */
+    public SudokuHint(int row, int col, int value, SudokuRater.Technique technique) {
+        this.row = row;
+        this.col = col;
+        this.value = value;
+        this.technique = technique;
+    }
+
+    /**
+     * Returns the row index of the cell.
+     *
+     * @return the row index.
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * Returns the column index of the cell.
+     *
+     * @return the column index.
+     */
+    public int getCol() {
+        return col;
+    }
+
+    /**
+     * Returns the value that belongs in the cell.
+     *
+     * @return the value.
+     */
+    public int getValue() {
+        return value;
+    }
+
+    /**
+     * Returns the technique that deduces the value.
+     *
+     * @return the technique, {@link SudokuRater.Technique#GUESS} if the value was taken from the solution.
+     */
+    public SudokuRater.Technique getTechnique() {
+        return technique;
+    }
+
+    /**
+     * Returns whether the value follows logically from the current board.
+     *
+     * @return {@code true} if the value was deduced, {@code false} if it was taken from the solution.
+     */
+    public boolean isLogical() {
+        return technique != SudokuRater.Technique.GUESS;
+    }
+
+    @Override
+    public String toString() {
+        return technique + ": " + value + " at (" + row + ", " + col + ")";
+    }
+}
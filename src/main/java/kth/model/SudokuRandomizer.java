@@ -1,11 +1,30 @@
 package kth.model;
 
-import java.util.Random;
+import kth.metrics.LatencyHistogram;
+import kth.metrics.Metrics;
+import kth.metrics.RandomizationEvent;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * The {@code SudokuRandomizer} class provides methods to apply random transformations
- * to a Sudoku puzzle, such as flipping the board and swapping numbers. These transformations
- * modify the puzzle while keeping it valid.
+ * The {@code SudokuRandomizer} class applies random validity-preserving transformations
+ * to a Sudoku puzzle. A transformation combines a permutation of the bands (groups of three
+ * rows), a permutation of the rows within each band, the same for stacks and columns, an
+ * optional transposition and a relabelling of the nine digits. This gives about 1.2 trillion
+ * variants of every puzzle, each of which is still valid and has the same difficulty.
+ * <p>
+ * All parts of a transformation are composed into one cell permutation and one digit table,
+ * each packed into a {@code long}, and applied in a single gather pass from a per-thread copy
+ * of the board, so no memory is allocated per call. The same seed always produces the same
+ * transformation.
+ * <p>
+ * Every transformation is timed in the {@code randomization} histogram of {@link Metrics}
+ * and reported as a {@link RandomizationEvent}.
+ * <p>
+ * Boards of other sizes are transformed the same way by
+ * {@link #randomizeBoard(SudokuGeometry, int[], int[], long)}, with the permutations held
+ * in per-thread arrays instead of packed nibbles, as lines and values past 15 do not fit
+ * in a nibble.
  *
  * @author Majd & Marvin
  * @version 1.0
@@ -13,91 +32,266 @@ import java.util.Random;
 public class SudokuRandomizer {
 
     private static final int GRID_SIZE = 9;
+    private static final int BAND_SIZE = 3;
+    private static final int CELL_COUNT = GRID_SIZE * GRID_SIZE;
+
+    // The six permutations of three elements, one element per nibble
+    private static final int[] PERMUTATIONS_OF_THREE = {0x210, 0x120, 0x201, 0x021, 0x102, 0x012};
+
+    // Per-thread copy of the board that the transformed cells are gathered from
+    private static final ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[2 * CELL_COUNT]);
+
+    // Per-thread copy of a board of any size, followed by the row, column and value maps
+    private static final int MAX_SIZE = SudokuGeometry.MAX_BOX_SIZE * SudokuGeometry.MAX_BOX_SIZE;
+    private static final ThreadLocal<int[]> largeScratch =
+            ThreadLocal.withInitial(() -> new int[2 * MAX_SIZE * MAX_SIZE + 3 * (MAX_SIZE + 1)]);
+
+    private static final LatencyHistogram RANDOMIZATION = Metrics.histogram("randomization");
 
     /**
-     * Randomly flips the board horizontally or vertically and swaps two random numbers.
+     * Applies a random transformation to both the puzzle and the solution of the matrix.
      *
      * @param matrix The 3D matrix representing the Sudoku puzzle and solution.
+     *               The matrix will be modified in place.
      */
     public static void randomizeBoard(int[][][] matrix) {
-        Random rand = new Random();
-
-        boolean flipHorizontally = rand.nextBoolean();
-        boolean flipVertically = rand.nextBoolean();
+        randomizeBoard(matrix, ThreadLocalRandom.current().nextLong());
+    }
 
-        if (flipHorizontally) {
-            flipBoardHorizontally(matrix);
-        }
-        if (flipVertically) {
-            flipBoardVertically(matrix);
+    /**
+     * Applies the transformation chosen by {@code seed} to both the puzzle and the solution of the matrix.
+     *
+     * @param matrix The 3D matrix representing the Sudoku puzzle and solution.
+     *               The matrix will be modified in place.
+     * @param seed the seed selecting the transformation.
+     */
+    public static void randomizeBoard(int[][][] matrix, long seed) {
+        RandomizationEvent event = new RandomizationEvent();
+        event.begin();
+        long start = Metrics.start();
+        int[] copy = scratch.get();
+        for (int row = 0; row < GRID_SIZE; row++) {
+            for (int col = 0; col < GRID_SIZE; col++) {
+                copy[row * GRID_SIZE + col] = matrix[row][col][0];
+                copy[CELL_COUNT + row * GRID_SIZE + col] = matrix[row][col][1];
+            }
         }
+        long rowMap = lineMap(seed, 0);
+        long colMap = lineMap(seed, 4);
+        long digitMap = digitMap(seed);
+        boolean transpose = (mix(seed, 8) & 1) != 0;
 
-        swapRandomNumbers(matrix);
+        for (int row = 0; row < GRID_SIZE; row++) {
+            for (int col = 0; col < GRID_SIZE; col++) {
+                int source = sourceOf(row, col, rowMap, colMap, transpose);
+                matrix[row][col][0] = nibble(digitMap, copy[source]);
+                matrix[row][col][1] = nibble(digitMap, copy[CELL_COUNT + source]);
+            }
+        }
+        finish(event, start, BAND_SIZE);
     }
 
     /**
-     * Flips the Sudoku board horizontally, reversing the order of columns in each row.
-     * This transformation affects both the puzzle and its solution.
+     * Applies the transformation chosen by {@code seed} to a puzzle and its solution, both
+     * stored as flat arrays of 81 cells in row-major order.
      *
-     * @param board The 3D matrix representing the Sudoku puzzle and solution.
-     *              The matrix will be modified in place.
+     * @param puzzle the puzzle cells, modified in place.
+     * @param solution the solution cells, modified in place, or {@code null} to transform the puzzle only.
+     * @param seed the seed selecting the transformation.
      */
-    private static void flipBoardHorizontally(int[][][] board) {
+    public static void randomizeBoard(int[] puzzle, int[] solution, long seed) {
+        RandomizationEvent event = new RandomizationEvent();
+        event.begin();
+        long start = Metrics.start();
+        int[] copy = scratch.get();
+        System.arraycopy(puzzle, 0, copy, 0, CELL_COUNT);
+        if (solution != null) {
+            System.arraycopy(solution, 0, copy, CELL_COUNT, CELL_COUNT);
+        }
+        long rowMap = lineMap(seed, 0);
+        long colMap = lineMap(seed, 4);
+        long digitMap = digitMap(seed);
+        boolean transpose = (mix(seed, 8) & 1) != 0;
+
         for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE / 2; col++) {
-                for (int z = 0; z < 2; z++) {
-                    int temp = board[row][col][z];
-                    board[row][col][z] = board[row][GRID_SIZE - 1 - col][z];
-                    board[row][GRID_SIZE - 1 - col][z] = temp;
+            for (int col = 0; col < GRID_SIZE; col++) {
+                int source = sourceOf(row, col, rowMap, colMap, transpose);
+                puzzle[row * GRID_SIZE + col] = nibble(digitMap, copy[source]);
+            }
+        }
+        if (solution != null) {
+            for (int row = 0; row < GRID_SIZE; row++) {
+                for (int col = 0; col < GRID_SIZE; col++) {
+                    int source = sourceOf(row, col, rowMap, colMap, transpose);
+                    solution[row * GRID_SIZE + col] = nibble(digitMap, copy[CELL_COUNT + source]);
                 }
             }
         }
+        finish(event, start, BAND_SIZE);
     }
 
     /**
-     * Flips the Sudoku board vertically, reversing the order of rows.
-     * This transformation affects both the puzzle and its solution.
+     * Applies the transformation chosen by {@code seed} to a puzzle and its solution on a board
+     * of the given geometry, both stored as flat arrays of cells in row-major order. For the
+     * standard board this is the same as {@link #randomizeBoard(int[], int[], long)}.
      *
-     * @param board The 3D matrix representing the Sudoku puzzle and solution.
-     *              The matrix will be modified in place.
+     * @param geometry the geometry of the board.
+     * @param puzzle the puzzle cells, modified in place.
+     * @param solution the solution cells, modified in place, or {@code null} to transform the puzzle only.
+     * @param seed the seed selecting the transformation.
      */
-    private static void flipBoardVertically(int[][][] board) {
-        for (int row = 0; row < GRID_SIZE / 2; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                for (int z = 0; z < 2; z++) {
-                    int temp = board[row][col][z];
-                    board[row][col][z] = board[GRID_SIZE - 1 - row][col][z];
-                    board[GRID_SIZE - 1 - row][col][z] = temp;
+    public static void randomizeBoard(SudokuGeometry geometry, int[] puzzle, int[] solution, long seed) {
+        if (geometry == SudokuGeometry.STANDARD) {
+            randomizeBoard(puzzle, solution, seed);
+            return;
+        }
+        RandomizationEvent event = new RandomizationEvent();
+        event.begin();
+        long start = Metrics.start();
+        int size = geometry.size;
+        int cellCount = geometry.cellCount;
+        int[] work = largeScratch.get();
+        int rowMap = 2 * cellCount;
+        int colMap = rowMap + size;
+        int digitMap = colMap + size;
+        System.arraycopy(puzzle, 0, work, 0, cellCount);
+        if (solution != null) {
+            System.arraycopy(solution, 0, work, cellCount, cellCount);
+        }
+        lineMap(work, rowMap, geometry.boxSize, seed, 0);
+        lineMap(work, colMap, geometry.boxSize, seed, 1 + geometry.boxSize);
+        for (int value = 0; value <= size; value++) {
+            work[digitMap + value] = value;
+        }
+        shuffle(work, digitMap + 1, size, seed, 2 * (1 + geometry.boxSize));
+        boolean transpose = (mix(seed, 3 * (1 + geometry.boxSize)) & 1) != 0;
+
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int source = transpose ? work[rowMap + col] * size + work[colMap + row]
+                        : work[rowMap + row] * size + work[colMap + col];
+                puzzle[row * size + col] = work[digitMap + work[source]];
+                if (solution != null) {
+                    solution[row * size + col] = work[digitMap + work[cellCount + source]];
                 }
             }
         }
+        finish(event, start, geometry.boxSize);
     }
 
     /**
-     * Swaps all occurrences of two randomly selected numbers throughout the Sudoku board.
-     * This random transformation ensures that the puzzle remains valid while changing its appearance.
-     *
-     * @param board The 3D matrix representing the Sudoku puzzle and solution.
-     *              The numbers in the matrix will be swapped in place.
+     * Records a finished transformation in the metrics and, if it is being recorded, as a JFR event.
      */
-    private static void swapRandomNumbers(int[][][] board) {
-        Random rand = new Random();
-        int num1 = rand.nextInt(9) + 1;  // Random number between 1 and 9
-        int num2;
-        do {
-            num2 = rand.nextInt(9) + 1;
-        } while (num1 == num2);  // Ensure num1 and num2 are different
+    private static void finish(RandomizationEvent event, long start, int boxSize) {
+        Metrics.stop(RANDOMIZATION, start);
+        if (event.shouldCommit()) {
+            event.boxSize = boxSize;
+            event.commit();
+        }
+    }
 
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                for (int z = 0; z < 2; z++) {
-                    if (board[row][col][z] == num1) {
-                        board[row][col][z] = num2;
-                    } else if (board[row][col][z] == num2) {
-                        board[row][col][z] = num1;
-                    }
-                }
+    /**
+     * Writes a random band-preserving line permutation for a board with the given box size
+     * into {@code map[offset..offset + boxSize * boxSize)}: element {@code i} holds the
+     * source line of line {@code i}.
+     */
+    private static void lineMap(int[] map, int offset, int boxSize, long seed, int stream) {
+        // Permute the bands in the first slots, then expand the bands into their lines from
+        // the last band down, so that no band is overwritten before it is read
+        for (int band = 0; band < boxSize; band++) {
+            map[offset + band] = band;
+        }
+        shuffle(map, offset, boxSize, seed, stream);
+        for (int band = boxSize - 1; band >= 0; band--) {
+            int first = map[offset + band] * boxSize;
+            for (int line = 0; line < boxSize; line++) {
+                map[offset + band * boxSize + line] = first + line;
             }
+            shuffle(map, offset + band * boxSize, boxSize, seed, stream + 1 + band);
+        }
+    }
+
+    /**
+     * Shuffles {@code array[offset..offset + length)} with a Fisher-Yates shuffle driven by
+     * the random numbers derived from {@code seed} and {@code stream}.
+     */
+    private static void shuffle(int[] array, int offset, int length, long seed, int stream) {
+        long random = mix(seed, stream);
+        for (int i = length - 1; i > 0; i--) {
+            random = mix(random, i);
+            int j = bounded(random, i + 1);
+            int temp = array[offset + i];
+            array[offset + i] = array[offset + j];
+            array[offset + j] = temp;
+        }
+    }
+
+    /**
+     * Returns the cell whose value ends up at the given row and column after the transformation.
+     */
+    private static int sourceOf(int row, int col, long rowMap, long colMap, boolean transpose) {
+        if (transpose) {
+            return nibble(rowMap, col) * GRID_SIZE + nibble(colMap, row);
         }
+        return nibble(rowMap, row) * GRID_SIZE + nibble(colMap, col);
+    }
+
+    /**
+     * Builds a random line permutation that keeps bands together: the bands are permuted and
+     * the lines within each band are permuted independently. Nibble {@code i} of the result
+     * holds the source line of line {@code i}.
+     *
+     * @param seed the seed selecting the transformation.
+     * @param stream the index of the first of the four random numbers used.
+     */
+    private static long lineMap(long seed, int stream) {
+        int bands = PERMUTATIONS_OF_THREE[bounded(mix(seed, stream), 6)];
+        long map = 0;
+        for (int band = 0; band < BAND_SIZE; band++) {
+            int lines = PERMUTATIONS_OF_THREE[bounded(mix(seed, stream + 1 + band), 6)];
+            int sourceBand = (bands >>> (band * 4)) & 0xF;
+            for (int line = 0; line < BAND_SIZE; line++) {
+                long source = sourceBand * BAND_SIZE + ((lines >>> (line * 4)) & 0xF);
+                map |= source << ((band * BAND_SIZE + line) * 4);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Builds a random relabelling of the digits 1-9 with a Fisher-Yates shuffle over nibbles.
+     * Nibble {@code d} of the result holds the new label of digit {@code d}; 0 stays 0.
+     */
+    private static long digitMap(long seed) {
+        long map = 0x9876543210L;
+        for (int i = GRID_SIZE; i > 1; i--) {
+            int j = 1 + bounded(mix(seed, 8 + i), i);
+            long a = (map >>> (i * 4)) & 0xF;
+            long b = (map >>> (j * 4)) & 0xF;
+            map &= ~((0xFL << (i * 4)) | (0xFL << (j * 4)));
+            map |= (a << (j * 4)) | (b << (i * 4));
+        }
+        return map;
+    }
+
+    /**
+     * Returns the {@code index}-th random number derived from {@code seed} (SplitMix64).
+     */
+    private static long mix(long seed, int index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Maps a random number to the range [0, bound) with a multiplication instead of a division.
+     */
+    private static int bounded(long random, int bound) {
+        return (int) (((random >>> 32) * bound) >>> 32);
+    }
+
+    private static int nibble(long packed, int index) {
+        return (int) (packed >>> (index * 4)) & 0xF;
     }
 }
@@ -0,0 +1,487 @@
+package kth.model;
+
+/**
+ * The {@code SudokuRater} class measures how hard a puzzle is for a human. It solves the
+ * puzzle step by step with a graded set of techniques, always using the easiest technique
+ * that makes progress, and reports the hardest technique needed together with a score
+ * that sums the difficulty of every step. When no technique applies, one cell is filled
+ * in from the solution and the step is counted as a {@link Technique#GUESS}.
+ * <p>
+ * Candidates are kept as one bit mask per cell, and the rater reuses its arrays between
+ * puzzles. A rater instance is not thread-safe; use one instance per thread.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class SudokuRater {
+
+    /**
+     * The solving techniques known to the rater, in the order they are tried.
+     */
+    public enum Technique {
+        HIDDEN_SINGLE(12),
+        NAKED_SINGLE(23),
+        LOCKED_CANDIDATES(28),
+        NAKED_PAIR(30),
+        X_WING(32),
+        HIDDEN_PAIR(34),
+        NAKED_TRIPLE(36),
+        SWORDFISH(38),
+        HIDDEN_TRIPLE(40),
+        GUESS(100);
+
+        private final int difficulty;
+
+        Technique(int difficulty) {
+            this.difficulty = difficulty;
+        }
+
+        /**
+         * Returns the difficulty of one step with this technique.
+         *
+         * @return the difficulty, in tenths of a point.
+         */
+        public int getDifficulty() {
+            return difficulty;
+        }
+    }
+
+    /**
+     * The result of rating a puzzle.
+     */
+    public static final class Rating {
+        private final int score;
+        private final int steps;
+        private final Technique hardestTechnique;
+
+        Rating(int score, int steps, Technique hardestTechnique) {
+            this.score = score;
+            this.steps = steps;
+            this.hardestTechnique = hardestTechnique;
+        }
+
+        /**
+         * Returns the sum of the difficulties of all steps needed to solve the puzzle.
+         *
+         * @return the score.
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * Returns the number of steps needed to solve the puzzle.
+         *
+         * @return the number of steps.
+         */
+        public int getSteps() {
+            return steps;
+        }
+
+        /**
+         * Returns the hardest technique needed to solve the puzzle.
+         *
+         * @return the hardest technique, or {@code null} if the puzzle had no empty cells.
+         */
+        public Technique getHardestTechnique() {
+            return hardestTechnique;
+        }
+
+        /**
+         * Returns the difficulty level the puzzle belongs to: puzzles that only need singles
+         * are easy, puzzles that need at most pairs, locked candidates or an X-Wing are medium,
+         * and all others are hard.
+         *
+         * @return the difficulty level.
+         */
+        public SudokuUtilities.SudokuLevel getLevel() {
+            if (hardestTechnique == null || hardestTechnique.difficulty <= Technique.NAKED_SINGLE.difficulty) {
+                return SudokuUtilities.SudokuLevel.EASY;
+            }
+            if (hardestTechnique.difficulty <= Technique.HIDDEN_PAIR.difficulty) {
+                return SudokuUtilities.SudokuLevel.MEDIUM;
+            }
+            return SudokuUtilities.SudokuLevel.HARD;
+        }
+
+        @Override
+        public String toString() {
+            return getLevel() + " (score " + score + ", " + steps + " steps, hardest " + hardestTechnique + ")";
+        }
+    }
+
+    private final SudokuGeometry geometry;
+    private final SudokuSolver solver;
+    private final int[] values;
+    private final int[] candidates;
+    private final int[] solution;
+    private final int[] lineMasks;
+    private int remaining;
+
+    /**
+     * Constructs a rater for the standard 9x9 board.
+     */
+    public SudokuRater() {
+        this(SudokuGeometry.STANDARD);
+    }
+
+    /**
+     * Constructs a rater for boards with the given geometry.
+     *
+     * @param geometry the geometry of the boards to rate.
+     */
+    public SudokuRater(SudokuGeometry geometry) {
+        this.geometry = geometry;
+        this.solver = new SudokuSolver(geometry);
+        this.values = new int[geometry.cellCount];
+        this.candidates = new int[geometry.cellCount];
+        this.solution = new int[geometry.cellCount];
+        this.lineMasks = new int[geometry.size];
+    }
+
+    /**
+     * Rates the given puzzle.
+     *
+     * @param puzzle the puzzle as a flat array of cells (0 represents an empty cell).
+     * @return the rating of the puzzle.
+     * @throws IllegalArgumentException if the puzzle has no solution or contains an invalid value.
+     */
+    public Rating rate(int[] puzzle) {
+        if (!solver.solve(puzzle, solution)) {
+            throw new IllegalArgumentException("The puzzle has no solution.");
+        }
+
+        remaining = geometry.cellCount;
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            values[cell] = 0;
+            candidates[cell] = geometry.allDigits;
+        }
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            if (puzzle[cell] != 0) {
+                place(cell, puzzle[cell]);
+            }
+        }
+
+        int score = 0;
+        int steps = 0;
+        Technique hardest = null;
+        while (remaining > 0) {
+            Technique technique = step();
+            score += technique.difficulty;
+            steps++;
+            if (hardest == null || technique.difficulty > hardest.difficulty) {
+                hardest = technique;
+            }
+        }
+        return new Rating(score, steps, hardest);
+    }
+
+    /**
+     * Rates a puzzle given as a 2D array of integers.
+     *
+     * @param puzzle the puzzle as a 2D array of integers (0 represents an empty cell).
+     * @return the rating of the puzzle.
+     * @throws IllegalArgumentException if the puzzle has no solution or contains an invalid value.
+     */
+    public Rating rate(int[][] puzzle) {
+        int[] flat = new int[geometry.cellCount];
+        for (int row = 0; row < geometry.size; row++) {
+            System.arraycopy(puzzle[row], 0, flat, row * geometry.size, geometry.size);
+        }
+        return rate(flat);
+    }
+
+    /**
+     * Applies the easiest technique that makes progress.
+     *
+     * @return the technique that was applied.
+     */
+    private Technique step() {
+        if (hiddenSingle()) return Technique.HIDDEN_SINGLE;
+        if (nakedSingle()) return Technique.NAKED_SINGLE;
+        if (lockedCandidates()) return Technique.LOCKED_CANDIDATES;
+        if (nakedSubset(2)) return Technique.NAKED_PAIR;
+        if (fish(2)) return Technique.X_WING;
+        if (hiddenSubset(2)) return Technique.HIDDEN_PAIR;
+        if (nakedSubset(3)) return Technique.NAKED_TRIPLE;
+        if (fish(3)) return Technique.SWORDFISH;
+        if (hiddenSubset(3)) return Technique.HIDDEN_TRIPLE;
+        guess();
+        return Technique.GUESS;
+    }
+
+    /**
+     * Places a digit and removes it from the candidates of all peers.
+     */
+    private void place(int cell, int value) {
+        int bit = 1 << (value - 1);
+        values[cell] = value;
+        candidates[cell] = 0;
+        for (int peer : geometry.peers[cell]) {
+            candidates[peer] &= ~bit;
+        }
+        remaining--;
+    }
+
+    /**
+     * Removes candidates from a cell.
+     *
+     * @return {@code true} if any candidate was removed.
+     */
+    private boolean eliminate(int cell, int mask) {
+        if ((candidates[cell] & mask) == 0) {
+            return false;
+        }
+        candidates[cell] &= ~mask;
+        return true;
+    }
+
+    private boolean hiddenSingle() {
+        for (int[] unit : geometry.units) {
+            int once = 0;
+            int twice = 0;
+            for (int cell : unit) {
+                twice |= once & candidates[cell];
+                once |= candidates[cell];
+            }
+            int hidden = once & ~twice;
+            if (hidden != 0) {
+                int bit = hidden & -hidden;
+                for (int cell : unit) {
+                    if ((candidates[cell] & bit) != 0) {
+                        place(cell, Integer.numberOfTrailingZeros(bit) + 1);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean nakedSingle() {
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            int mask = candidates[cell];
+            if (values[cell] == 0 && mask != 0 && (mask & (mask - 1)) == 0) {
+                place(cell, Integer.numberOfTrailingZeros(mask) + 1);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Pointing: a digit confined to one line within a box is removed from the rest of the line.
+     * Claiming: a digit confined to one box within a line is removed from the rest of the box.
+     */
+    private boolean lockedCandidates() {
+        int size = geometry.size;
+        for (int bit = 1; bit <= geometry.allDigits; bit <<= 1) {
+            for (int box = 0; box < size; box++) {
+                int rows = 0;
+                int cols = 0;
+                for (int cell : geometry.units[2 * size + box]) {
+                    if ((candidates[cell] & bit) != 0) {
+                        rows |= 1 << geometry.rowOf[cell];
+                        cols |= 1 << geometry.colOf[cell];
+                    }
+                }
+                if (Integer.bitCount(rows) == 1
+                        && eliminateOutsideBox(geometry.units[Integer.numberOfTrailingZeros(rows)], box, bit)) {
+                    return true;
+                }
+                if (Integer.bitCount(cols) == 1
+                        && eliminateOutsideBox(geometry.units[size + Integer.numberOfTrailingZeros(cols)], box, bit)) {
+                    return true;
+                }
+            }
+            for (int line = 0; line < 2 * size; line++) {
+                int boxes = 0;
+                for (int cell : geometry.units[line]) {
+                    if ((candidates[cell] & bit) != 0) {
+                        boxes |= 1 << geometry.boxOf[cell];
+                    }
+                }
+                if (Integer.bitCount(boxes) == 1) {
+                    boolean changed = false;
+                    for (int cell : geometry.units[2 * size + Integer.numberOfTrailingZeros(boxes)]) {
+                        boolean inLine = line < size ? geometry.rowOf[cell] == line : geometry.colOf[cell] == line - size;
+                        if (!inLine) {
+                            changed |= eliminate(cell, bit);
+                        }
+                    }
+                    if (changed) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean eliminateOutsideBox(int[] line, int box, int bit) {
+        boolean changed = false;
+        for (int cell : line) {
+            if (geometry.boxOf[cell] != box) {
+                changed |= eliminate(cell, bit);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Naked subsets: {@code count} cells of a unit whose candidates together are exactly
+     * {@code count} digits; those digits are removed from the other cells of the unit.
+     */
+    private boolean nakedSubset(int count) {
+        for (int[] unit : geometry.units) {
+            int n = unit.length;
+            for (int a = 0; a < n; a++) {
+                int maskA = candidates[unit[a]];
+                if (maskA == 0 || Integer.bitCount(maskA) > count) continue;
+                for (int b = a + 1; b < n; b++) {
+                    int maskB = maskA | candidates[unit[b]];
+                    if (candidates[unit[b]] == 0 || Integer.bitCount(maskB) > count) continue;
+                    if (count == 2) {
+                        if (eliminateFromUnit(unit, maskB, (1 << a) | (1 << b))) return true;
+                        continue;
+                    }
+                    for (int c = b + 1; c < n; c++) {
+                        int maskC = maskB | candidates[unit[c]];
+                        if (candidates[unit[c]] == 0 || Integer.bitCount(maskC) != count) continue;
+                        if (eliminateFromUnit(unit, maskC, (1 << a) | (1 << b) | (1 << c))) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean eliminateFromUnit(int[] unit, int digits, int keepPositions) {
+        boolean changed = false;
+        for (int position = 0; position < unit.length; position++) {
+            if ((keepPositions & (1 << position)) == 0) {
+                changed |= eliminate(unit[position], digits);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Hidden subsets: {@code count} digits that fit in exactly {@code count} cells of a unit;
+     * all other candidates are removed from those cells.
+     */
+    private boolean hiddenSubset(int count) {
+        int size = geometry.size;
+        for (int[] unit : geometry.units) {
+            // lineMasks[d] holds the positions within the unit where digit d + 1 can go
+            for (int digit = 0; digit < size; digit++) {
+                int positions = 0;
+                for (int position = 0; position < unit.length; position++) {
+                    if ((candidates[unit[position]] & (1 << digit)) != 0) {
+                        positions |= 1 << position;
+                    }
+                }
+                lineMasks[digit] = positions;
+            }
+            for (int a = 0; a < size; a++) {
+                if (lineMasks[a] == 0 || Integer.bitCount(lineMasks[a]) > count) continue;
+                for (int b = a + 1; b < size; b++) {
+                    int positionsB = lineMasks[a] | lineMasks[b];
+                    if (lineMasks[b] == 0 || Integer.bitCount(positionsB) > count) continue;
+                    if (count == 2) {
+                        if (keepOnly(unit, positionsB, (1 << a) | (1 << b))) return true;
+                        continue;
+                    }
+                    for (int c = b + 1; c < size; c++) {
+                        int positionsC = positionsB | lineMasks[c];
+                        if (lineMasks[c] == 0 || Integer.bitCount(positionsC) != count) continue;
+                        if (keepOnly(unit, positionsC, (1 << a) | (1 << b) | (1 << c))) return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean keepOnly(int[] unit, int positions, int digits) {
+        boolean changed = false;
+        for (int position = 0; position < unit.length; position++) {
+            if ((positions & (1 << position)) != 0) {
+                changed |= eliminate(unit[position], ~digits & geometry.allDigits);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Fish (X-Wing for two lines, Swordfish for three): a digit that, in {@code count} rows,
+     * can only go in the same {@code count} columns is removed from those columns in all
+     * other rows, and the same with rows and columns swapped.
+     */
+    private boolean fish(int count) {
+        int size = geometry.size;
+        for (int bit = 1; bit <= geometry.allDigits; bit <<= 1) {
+            for (int orientation = 0; orientation < 2; orientation++) {
+                // lineMasks[line] holds the cross positions where the digit can go
+                for (int line = 0; line < size; line++) {
+                    int positions = 0;
+                    for (int cross = 0; cross < size; cross++) {
+                        if ((candidates[cellAt(orientation, line, cross)] & bit) != 0) {
+                            positions |= 1 << cross;
+                        }
+                    }
+                    lineMasks[line] = positions;
+                }
+                for (int a = 0; a < size; a++) {
+                    if (Integer.bitCount(lineMasks[a]) < 2 || Integer.bitCount(lineMasks[a]) > count) continue;
+                    for (int b = a + 1; b < size; b++) {
+                        int crossB = lineMasks[a] | lineMasks[b];
+                        if (Integer.bitCount(lineMasks[b]) < 2 || Integer.bitCount(crossB) > count) continue;
+                        if (count == 2) {
+                            if (eliminateFish(orientation, crossB, (1 << a) | (1 << b), bit)) return true;
+                            continue;
+                        }
+                        for (int c = b + 1; c < size; c++) {
+                            int crossC = crossB | lineMasks[c];
+                            if (Integer.bitCount(lineMasks[c]) < 2 || Integer.bitCount(crossC) != count) continue;
+                            if (eliminateFish(orientation, crossC, (1 << a) | (1 << b) | (1 << c), bit)) return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean eliminateFish(int orientation, int crossLines, int baseLines, int bit) {
+        boolean changed = false;
+        for (int line = 0; line < geometry.size; line++) {
+            if ((baseLines & (1 << line)) != 0) continue;
+            for (int cross = 0; cross < geometry.size; cross++) {
+                if ((crossLines & (1 << cross)) != 0) {
+                    changed |= eliminate(cellAt(orientation, line, cross), bit);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private int cellAt(int orientation, int line, int cross) {
+        return orientation == 0 ? line * geometry.size + cross : cross * geometry.size + line;
+    }
+
+    /**
+     * Fills in the solution value of the empty cell with the fewest candidates.
+     */
+    private void guess() {
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            if (values[cell] == 0 && Integer.bitCount(candidates[cell]) < bestCount) {
+                best = cell;
+                bestCount = Integer.bitCount(candidates[cell]);
+            }
+        }
+        place(best, solution[best]);
+    }
+}
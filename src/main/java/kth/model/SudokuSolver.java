@@ -0,0 +1,332 @@
+package kth.model;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * The {@code SudokuSolver} class solves Sudoku puzzles stored as flat arrays of cells in
+ * row-major order, where 0 represents an empty cell. The candidates of every row, column
+ * and box are kept as bit masks, naked and hidden singles are propagated after every
+ * placement and the search backtracks on the cell with the fewest candidates.
+ * <p>
+ * All state lives in arrays allocated once per solver, so solving does not allocate.
+ * A solver instance is not thread-safe; use one instance per thread.
+ * <p>
+ * On large boards a single search can take very long. A node limit bounds the number of
+ * search nodes one call may visit; a search that reaches it is abandoned.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class SudokuSolver {
+    private final SudokuGeometry geometry;
+    private final int[] cells;
+    private final int[] rowUsed;
+    private final int[] colUsed;
+    private final int[] boxUsed;
+    private final int[] trail;
+    private final int[] solution;
+    private int trailSize;
+    private int solutionCount;
+    private int solutionLimit;
+    private long nodeLimit = Long.MAX_VALUE;
+    private long nodes;
+    private RandomGenerator random;
+
+    /**
+     * Constructs a solver for the standard 9x9 board.
+     */
+    public SudokuSolver() {
+        this(SudokuGeometry.STANDARD);
+    }
+
+    /**
+     * Constructs a solver for boards with the given geometry.
+     *
+     * @param geometry the geometry of the boards to solve.
+     */
+    public SudokuSolver(SudokuGeometry geometry) {
+        this.geometry = geometry;
+        this.cells = new int[geometry.cellCount];
+        this.rowUsed = new int[geometry.size];
+        this.colUsed = new int[geometry.size];
+        this.boxUsed = new int[geometry.size];
+        this.trail = new int[geometry.cellCount];
+        this.solution = new int[geometry.cellCount];
+    }
+
+    /**
+     * Sets the number of search nodes after which a call gives up. An abandoned search
+     * finds no solution, and an abandoned count reports {@code limit} solutions, so that
+     * a uniqueness check treats the puzzle as ambiguous.
+     *
+     * @param nodeLimit the maximum number of search nodes per call, or {@code Long.MAX_VALUE} for no limit.
+     * @throws IllegalArgumentException if the limit is not positive.
+     */
+    public void setNodeLimit(long nodeLimit) {
+        if (nodeLimit <= 0) {
+            throw new IllegalArgumentException("Invalid node limit: " + nodeLimit);
+        }
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Solves the given puzzle and writes the first solution found into {@code solution}.
+     *
+     * @param puzzle the puzzle as a flat array of cells (0 represents an empty cell).
+     * @param solution the array receiving the solved cells; may be the same array as {@code puzzle}.
+     * @return {@code true} if a solution was found, {@code false} if the puzzle has none
+     *         or the node limit was reached.
+     * @throws IllegalArgumentException if the puzzle contains a value outside the valid range.
+     */
+    public boolean solve(int[] puzzle, int[] solution) {
+        if (run(puzzle, 0, 1) == 0) {
+            return false;
+        }
+        System.arraycopy(this.solution, 0, solution, 0, geometry.cellCount);
+        return true;
+    }
+
+    /**
+     * Counts the solutions of the given puzzle, stopping as soon as {@code limit} solutions
+     * have been found. Use a limit of 2 to check that a puzzle has exactly one solution.
+     *
+     * @param puzzle the puzzle as a flat array of cells (0 represents an empty cell).
+     * @param limit the number of solutions after which the search stops.
+     * @return the number of solutions found, at most {@code limit}, or {@code limit} if the
+     *         node limit was reached.
+     * @throws IllegalArgumentException if the puzzle contains a value outside the valid range.
+     */
+    public int countSolutions(int[] puzzle, int limit) {
+        int count = run(puzzle, 0, limit);
+        return nodes > nodeLimit ? limit : count;
+    }
+
+    /**
+     * Solves the given puzzle, trying the candidates of every branch in random order, and
+     * writes the solution found into {@code solution}. Solving an empty puzzle this way
+     * produces a random complete grid.
+     *
+     * @param puzzle the puzzle as a flat array of cells (0 represents an empty cell).
+     * @param solution the array receiving the solved cells; may be the same array as {@code puzzle}.
+     * @param random the source of randomness used to order the candidates.
+     * @return {@code true} if a solution was found, {@code false} if the puzzle has none
+     *         or the node limit was reached.
+     * @throws IllegalArgumentException if the puzzle contains a value outside the valid range.
+     */
+    public boolean solveRandomly(int[] puzzle, int[] solution, RandomGenerator random) {
+        this.random = random;
+        try {
+            return solve(puzzle, solution);
+        } finally {
+            this.random = null;
+        }
+    }
+
+    /**
+     * Solves a puzzle given as a 2D array of integers.
+     *
+     * @param puzzle the puzzle as a 2D array of integers (0 represents an empty cell).
+     * @return the solution as a new 2D array, or {@code null} if the puzzle has no solution.
+     * @throws IllegalArgumentException if the puzzle contains a value outside the valid range.
+     */
+    public int[][] solve(int[][] puzzle) {
+        int size = geometry.size;
+        int[] flat = new int[geometry.cellCount];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(puzzle[row], 0, flat, row * size, size);
+        }
+        if (!solve(flat, flat)) {
+            return null;
+        }
+        int[][] result = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(flat, row * size, result[row], 0, size);
+        }
+        return result;
+    }
+
+    /**
+     * Loads the puzzle and runs the search until {@code limit} solutions are found.
+     *
+     * @return the number of solutions found.
+     */
+    private int run(int[] puzzle, int offset, int limit) {
+        solutionCount = 0;
+        solutionLimit = limit;
+        nodes = 0;
+        if (load(puzzle, offset)) {
+            search();
+        }
+        undo(0);
+        return solutionCount;
+    }
+
+    /**
+     * Clears the solver state and places the givens of the puzzle.
+     *
+     * @return {@code false} if two givens contradict each other.
+     */
+    private boolean load(int[] puzzle, int offset) {
+        Arrays.fill(rowUsed, 0);
+        Arrays.fill(colUsed, 0);
+        Arrays.fill(boxUsed, 0);
+        Arrays.fill(cells, 0);
+        trailSize = 0;
+
+        boolean consistent = true;
+        for (int cell = 0; cell < geometry.cellCount; cell++) {
+            int value = puzzle[offset + cell];
+            if (value < 0 || value > geometry.size) {
+                throw new IllegalArgumentException("Invalid cell value: " + value);
+            }
+            if (value != 0) {
+                if ((candidates(cell) & (1 << (value - 1))) == 0) {
+                    consistent = false;
+                }
+                place(cell, value);
+            }
+        }
+        return consistent;
+    }
+
+    /**
+     * Searches for solutions from the current state, restoring the state before returning.
+     */
+    private void search() {
+        int mark = trailSize;
+        if (++nodes <= nodeLimit && propagate()) {
+            int best = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for (int cell = 0; cell < geometry.cellCount && bestCount > 2; cell++) {
+                if (cells[cell] == 0) {
+                    int count = Integer.bitCount(candidates(cell));
+                    if (count < bestCount) {
+                        best = cell;
+                        bestCount = count;
+                    }
+                }
+            }
+
+            if (best < 0) {
+                if (solutionCount++ == 0) {
+                    System.arraycopy(cells, 0, solution, 0, geometry.cellCount);
+                }
+            } else {
+                int candidates = candidates(best);
+                int branchMark = trailSize;
+                while (candidates != 0 && solutionCount < solutionLimit && nodes <= nodeLimit) {
+                    int bit = random == null ? candidates & -candidates : randomBit(candidates);
+                    candidates ^= bit;
+                    place(best, Integer.numberOfTrailingZeros(bit) + 1);
+                    search();
+                    undo(branchMark);
+                }
+            }
+        }
+        undo(mark);
+    }
+
+    /**
+     * Places naked and hidden singles until no more can be found.
+     *
+     * @return {@code false} if a contradiction was found.
+     */
+    private boolean propagate() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // Naked singles: cells with exactly one candidate
+            for (int cell = 0; cell < geometry.cellCount; cell++) {
+                if (cells[cell] == 0) {
+                    int candidates = candidates(cell);
+                    if (candidates == 0) {
+                        return false;
+                    }
+                    if ((candidates & (candidates - 1)) == 0) {
+                        place(cell, Integer.numberOfTrailingZeros(candidates) + 1);
+                        changed = true;
+                    }
+                }
+            }
+
+            // Hidden singles: digits with exactly one possible cell in a unit
+            for (int[] unit : geometry.units) {
+                int once = 0;
+                int twice = 0;
+                int used = 0;
+                for (int cell : unit) {
+                    if (cells[cell] != 0) {
+                        used |= 1 << (cells[cell] - 1);
+                    } else {
+                        int candidates = candidates(cell);
+                        twice |= once & candidates;
+                        once |= candidates;
+                    }
+                }
+                if ((once | used) != geometry.allDigits) {
+                    return false;
+                }
+
+                int hidden = once & ~twice;
+                while (hidden != 0) {
+                    int bit = hidden & -hidden;
+                    hidden ^= bit;
+                    for (int cell : unit) {
+                        if (cells[cell] == 0 && (candidates(cell) & bit) != 0) {
+                            place(cell, Integer.numberOfTrailingZeros(bit) + 1);
+                            changed = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Picks one of the set bits of the given mask at random.
+     */
+    private int randomBit(int mask) {
+        for (int skip = random.nextInt(Integer.bitCount(mask)); skip > 0; skip--) {
+            mask &= mask - 1;
+        }
+        return mask & -mask;
+    }
+
+    /**
+     * Returns the digits that can still be placed in the given cell as a bit mask.
+     */
+    private int candidates(int cell) {
+        return ~(rowUsed[geometry.rowOf[cell]] | colUsed[geometry.colOf[cell]] | boxUsed[geometry.boxOf[cell]])
+                & geometry.allDigits;
+    }
+
+    /**
+     * Places a digit in a cell and records the placement on the trail.
+     */
+    private void place(int cell, int value) {
+        int bit = 1 << (value - 1);
+        cells[cell] = value;
+        rowUsed[geometry.rowOf[cell]] |= bit;
+        colUsed[geometry.colOf[cell]] |= bit;
+        boxUsed[geometry.boxOf[cell]] |= bit;
+        trail[trailSize++] = cell;
+    }
+
+    /**
+     * Removes all placements made after the given trail position.
+     */
+    private void undo(int mark) {
+        while (trailSize > mark) {
+            int cell = trail[--trailSize];
+            int bit = ~(1 << (cells[cell] - 1));
+            rowUsed[geometry.rowOf[cell]] &= bit;
+            colUsed[geometry.colOf[cell]] &= bit;
+            boxUsed[geometry.boxOf[cell]] &= bit;
+            cells[cell] = 0;
+        }
+    }
+}
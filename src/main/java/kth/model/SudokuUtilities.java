@@ -1,9 +1,18 @@
 package kth.model;
 
+import kth.metrics.GenerationEvent;
+import kth.metrics.LatencyHistogram;
+import kth.metrics.Metrics;
+
+import java.util.SplittableRandom;
+
 /**
  * Utility class providing various methods to generate and manipulate
- * Sudoku puzzles at different difficulty levels. It delegates random transformations
- * to {@code SudokuRandomizer}.
+ * Sudoku puzzles at different difficulty levels. It delegates the generation of new
+ * puzzles to {@code SudokuGenerator}.
+ * <p>
+ * Values are written as single characters: '0' for an empty cell, '1' to '9', and the
+ * letters 'A' to 'P' for the values 10 to 25 of boards larger than 9x9.
  *
  * @author Majd & Marvin
  * @version 1.0
@@ -12,14 +21,27 @@ public class SudokuUtilities {
 
     public enum SudokuLevel {EASY, MEDIUM, HARD}
 
+    // The size of the standard board; boards of other sizes are described by SudokuGeometry
     public static final int GRID_SIZE = 9;
     public static final int SECTIONS_PER_ROW = 3;
     public static final int SECTION_SIZE = 3;
 
+    // Generators keep reusable work arrays, so every thread gets its own, one per box size
+    private static final ThreadLocal<SudokuGenerator[]> generators =
+            ThreadLocal.withInitial(() -> new SudokuGenerator[SudokuGeometry.MAX_BOX_SIZE + 1]);
+
+    // Generation time per level, indexed by the ordinal of the level
+    private static final LatencyHistogram[] GENERATION = new LatencyHistogram[SudokuLevel.values().length];
+
+    static {
+        for (SudokuLevel level : SudokuLevel.values()) {
+            GENERATION[level.ordinal()] = Metrics.histogram("generation." + level.name().toLowerCase());
+        }
+    }
+
     /**
-     * Generates a Sudoku puzzle and its corresponding solution in a 3D matrix format.
-     * The generated puzzle can be modified with random transformations such as
-     * flipping and swapping numbers to introduce variations.
+     * Generates a new Sudoku puzzle with a unique solution and its corresponding solution
+     * in a 3D matrix format. Every call builds a fresh grid, so puzzles do not repeat.
      *
      * @param level The difficulty level of the puzzle (EASY, MEDIUM, or HARD).
      * @return A 3D integer array where:
@@ -27,128 +49,135 @@ public class SudokuUtilities {
      *         - [row][col][1] contains the solved values.
      */
     public static int[][][] generateSudokuMatrix(SudokuLevel level) {
-        String representationString;
-        switch (level) {
-            case EASY: representationString = easy; break;
-            case MEDIUM: representationString = medium; break;
-            case HARD: representationString = hard; break;
-            default: throw new IllegalArgumentException("Invalid difficulty level: " + level);
-        }
-
-        // Convert the string representation to a 3D matrix
-        int[][][] matrix = convertStringToIntMatrix(representationString);
-
-        // Delegate random transformations to the SudokuRandomizer
-        SudokuRandomizer.randomizeBoard(matrix);
+        return generateSudokuMatrix(level, SECTION_SIZE);
+    }
 
+    /**
+     * Generates a new Sudoku puzzle and its solution, as {@link #generateSudokuMatrix(SudokuLevel)},
+     * on a board made of {@code boxSize * boxSize} boxes. The time taken is recorded per level
+     * in the {@code generation.<level>} histograms of {@link Metrics} and as a {@link GenerationEvent}.
+     *
+     * @param level The difficulty level of the puzzle (EASY, MEDIUM, or HARD).
+     * @param boxSize The number of rows (and columns) in one box, from 2 for a 4x4 board to 5 for a 25x25 board.
+     * @return A 3D integer array of {@code boxSize * boxSize} rows and columns in the same format.
+     * @throws IllegalArgumentException if the level is missing or the box size is not supported.
+     */
+    public static int[][][] generateSudokuMatrix(SudokuLevel level, int boxSize) {
+        if (level == null) throw new IllegalArgumentException("Invalid difficulty level: " + level);
+        SudokuGeometry geometry = SudokuGeometry.of(boxSize);
+        GenerationEvent event = new GenerationEvent();
+        event.begin();
+        long start = Metrics.start();
+        SudokuGenerator[] threadGenerators = generators.get();
+        if (threadGenerators[boxSize] == null) {
+            threadGenerators[boxSize] = boxSize == SECTION_SIZE ? new SudokuGenerator()
+                    : new SudokuGenerator(geometry, new SplittableRandom());
+        }
+        int[][][] matrix = threadGenerators[boxSize].generateMatrix(level);
+        Metrics.stop(GENERATION[level.ordinal()], start);
+        if (event.shouldCommit()) {
+            event.level = level.name();
+            event.boxSize = boxSize;
+            event.clues = countClues(matrix);
+            event.commit();
+        }
         return matrix;
     }
 
+    private static int countClues(int[][][] matrix) {
+        int clues = 0;
+        for (int[][] row : matrix) {
+            for (int[] cell : row) {
+                if (cell[0] != 0) clues++;
+            }
+        }
+        return clues;
+    }
+
     /**
-     * Converts a string representation of a Sudoku puzzle and its solution into a 3D integer matrix.
-     * The string contains 81 characters representing the puzzle followed by 81 characters representing the solution.
+     * Converts one line of the common one-puzzle-per-line format into a flat array of cells.
+     * The line holds 81 characters in row-major order, where '.' or '0' represents an empty
+     * cell and every other character must be a digit as in {@link #convertCharToSudokuInt}.
      *
-     * @param stringRepresentation A string of exactly 162 characters. The first 81 characters represent
-     *                             the puzzle, where '0' indicates an empty cell. The following 81 characters
-     *                             represent the solution.
-     * @return A 3D integer matrix where:
-     *         - [row][col][0] contains the initial puzzle values (0 represents empty).
-     *         - [row][col][1] contains the corresponding solution values.
+     * @param line the characters holding the line.
+     * @param offset the index of the first character of the line.
+     * @param length the number of characters in the line.
+     * @param cells the array receiving the 81 cells.
+     * @throws IllegalArgumentException if the line is not exactly 81 valid characters long.
      */
-    static int[][][] convertStringToIntMatrix(String stringRepresentation) {
-        if (stringRepresentation.length() != GRID_SIZE * GRID_SIZE * 2)
-            throw new IllegalArgumentException("The representation length must be 162 characters.");
+    public static void convertLineToCells(char[] line, int offset, int length, int[] cells) {
+        convertLineToCells(line, offset, length, cells, GRID_SIZE);
+    }
 
-        int[][][] values = new int[GRID_SIZE][GRID_SIZE][2];
-        char[] charRepresentation = stringRepresentation.toCharArray();
+    /**
+     * Converts one line of the one-puzzle-per-line format for a board of the given size into
+     * a flat array of cells. The line holds {@code size * size} characters in row-major order,
+     * where '.' or '0' represents an empty cell and every other character must be a value as
+     * in {@link #convertCharToSudokuInt}.
+     *
+     * @param line the characters holding the line.
+     * @param offset the index of the first character of the line.
+     * @param length the number of characters in the line.
+     * @param cells the array receiving the {@code size * size} cells.
+     * @param size the number of rows (and columns) of the board.
+     * @throws IllegalArgumentException if the line is not exactly {@code size * size} valid characters long.
+     */
+    public static void convertLineToCells(char[] line, int offset, int length, int[] cells, int size) {
+        if (length != size * size)
+            throw new IllegalArgumentException("The line length must be " + size * size + " characters.");
 
-        int charIndex = 0;
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                values[row][col][0] = convertCharToSudokuInt(charRepresentation[charIndex++]);
-            }
-        }
-        for (int row = 0; row < GRID_SIZE; row++) {
-            for (int col = 0; col < GRID_SIZE; col++) {
-                values[row][col][1] = convertCharToSudokuInt(charRepresentation[charIndex++]);
-            }
+        for (int cell = 0; cell < length; cell++) {
+            char ch = line[offset + cell];
+            cells[cell] = ch == '.' ? 0 : convertCharToSudokuInt(ch, size);
         }
+    }
 
-        return values;
+    /**
+     * Converts a flat array of 81 cells into one line of the one-puzzle-per-line format.
+     *
+     * @param cells the cells in row-major order (0 represents an empty cell).
+     * @param blank the character written for empty cells, usually '.' or '0'.
+     * @param line the array receiving the 81 characters.
+     */
+    public static void convertCellsToLine(int[] cells, char blank, char[] line) {
+        for (int cell = 0; cell < GRID_SIZE * GRID_SIZE; cell++) {
+            line[cell] = cells[cell] == 0 ? blank : convertSudokuIntToChar(cells[cell]);
+        }
     }
 
     /**
-     * Converts a character representing a Sudoku digit ('0'-'9') to its corresponding integer value.
+     * Converts a character representing a Sudoku value to its corresponding integer value:
+     * '0' for an empty cell, '1' to '9' for the values 1 to 9, and on boards larger than 9x9
+     * 'A' for 10 and so on up to 'P' for 25. Letters may also be given in lower case. A
+     * character whose value is larger than the board size is not valid.
      *
-     * @param ch The character representing a Sudoku digit.
+     * @param ch The character representing a Sudoku value.
+     * @param size The size of the board, which is also the largest valid value.
      * @return The integer value corresponding to the character.
-     * @throws IllegalArgumentException if the character is not between '0' and '9'.
+     * @throws IllegalArgumentException if the character is not a value of a board of that size.
      */
-    private static int convertCharToSudokuInt(char ch) {
-        if (ch < '0' || ch > '9') throw new IllegalArgumentException("Invalid character: " + ch);
-        return ch - '0';
+    public static int convertCharToSudokuInt(char ch, int size) {
+        int value;
+        if (ch >= '0' && ch <= '9') value = ch - '0';
+        else if (ch >= 'A' && ch <= 'Z') value = ch - 'A' + 10;
+        else if (ch >= 'a' && ch <= 'z') value = ch - 'a' + 10;
+        else value = Integer.MAX_VALUE;
+        if (value > size) throw new IllegalArgumentException("Invalid character: " + ch);
+        return value;
     }
 
-    // String representations of predefined Sudoku puzzles and their solutions
-    private static final String easy =
-            "000914070" +
-                    "010000054" +
-                    "040002000" +
-                    "007569001" +
-                    "401000500" +
-                    "300100000" +
-                    "039000408" +
-                    "650800030" +
-                    "000403260" +
-                    "583914672" +
-                    "712386954" +
-                    "946752183" +
-                    "827569341" +
-                    "461238597" +
-                    "395147826" +
-                    "239675418" +
-                    "654821739" +
-                    "178493265";
-
-    private static final String medium =
-            "300000010" +
-                    "000050906" +
-                    "050401200" +
-                    "030000080" +
-                    "002069400" +
-                    "000000002" +
-                    "900610000" +
-                    "200300058" +
-                    "100800090" +
-                    "324976815" +
-                    "718253946" +
-                    "659481273" +
-                    "536142789" +
-                    "872569431" +
-                    "491738562" +
-                    "985617324" +
-                    "267394158" +
-                    "143825697";
-
-    private static final String hard =
-            "030600000" +
-                    "000010070" +
-                    "080000000" +
-                    "000020000" +
-                    "340000800" +
-                    "500030094" +
-                    "000400000" +
-                    "150800200" +
-                    "700006050" +
-                    "931687542" +
-                    "465219378" +
-                    "287345916" +
-                    "876924135" +
-                    "349561827" +
-                    "512738694" +
-                    "693452781" +
-                    "154873269" +
-                    "728196453";
+    /**
+     * Converts a Sudoku value to the character representing it: '0'-'9', then 'A' for 10 and
+     * so on up to 'P' for 25.
+     *
+     * @param value The value, from 0 to 25.
+     * @return The character representing the value.
+     * @throws IllegalArgumentException if the value is outside the range 0 to 25.
+     */
+    public static char convertSudokuIntToChar(int value) {
+        if (value < 0 || value > 25) throw new IllegalArgumentException("Invalid value: " + value);
+        return value <= 9 ? (char) ('0' + value) : (char) ('A' + value - 10);
+    }
 
     /**
      * Extracts and returns the puzzle values from a 3D Sudoku matrix.
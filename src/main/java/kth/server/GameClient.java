@@ -0,0 +1,251 @@
+package kth.server;
+
+import kth.io.SudokuBoardCodec;
+import kth.metrics.LatencyHistogram;
+import kth.model.SudokuBoard;
+import kth.model.SudokuUtilities;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@code GameClient} class plays games on a {@code GameServer} with the binary format of
+ * {@link GameProtocol}. One client may be used by many threads at once.
+ * <p>
+ * Its {@code main} method is a load test: it starts a server on a free port of the loopback
+ * address, unless the URL of a running server is given, and lets a number of players on
+ * virtual threads each play a game by sending the solution move by move. At the end it
+ * prints the number of moves per second and the p50/p99 latency per request.
+ * <p>
+ * Usage: {@code GameClient [--url http://localhost:8080] [--players N] [--games N] [--batch N]}.
+ * With {@code --batch} every request carries up to N moves.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class GameClient {
+
+    private final HttpClient http;
+    private final URI base;
+
+    /**
+     * One game started on the server: its session id and its board as it was sent.
+     *
+     * @param id the session id.
+     * @param board the board of the new game.
+     */
+    public record Game(long id, SudokuBoard board) {
+    }
+
+    /**
+     * Constructs a client for the server at the given address.
+     *
+     * @param base the address of the server, for example {@code http://localhost:8080}.
+     */
+    public GameClient(URI base) {
+        this.http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        this.base = base;
+    }
+
+    /**
+     * Starts a new game.
+     *
+     * @param level the difficulty level.
+     * @param boxSize the number of rows (and columns) of one box, 3 for a 9x9 board.
+     * @return the new game.
+     * @throws IOException if the request fails or the server answers with an error.
+     */
+    public Game newGame(SudokuUtilities.SudokuLevel level, int boxSize) throws IOException {
+        ByteBuffer response = post(GameProtocol.NEW_GAME, new byte[]{(byte) level.ordinal(), (byte) boxSize});
+        long id = response.getLong();
+        return new Game(id, SudokuBoardCodec.decode(response));
+    }
+
+    /**
+     * Sends moves to a game. The moves are applied in order.
+     *
+     * @param id the session id of the game.
+     * @param moves the moves, packed with {@link GameProtocol#packMove}.
+     * @param count the number of moves to send, at most {@link GameProtocol#MAX_MOVES}.
+     * @return the status bits of the board after the moves.
+     * @throws IOException if the request fails or the server answers with an error.
+     */
+    public int move(long id, short[] moves, int count) throws IOException {
+        ByteBuffer request = ByteBuffer.allocate(Long.BYTES + count * Short.BYTES).putLong(id);
+        for (int i = 0; i < count; i++) {
+            request.putShort(moves[i]);
+        }
+        return post(GameProtocol.MOVE, request.array()).get() & 0xFF;
+    }
+
+    /**
+     * Checks a game.
+     *
+     * @param id the session id of the game.
+     * @return the status bits of the board.
+     * @throws IOException if the request fails or the server answers with an error.
+     */
+    public int check(long id) throws IOException {
+        return post(GameProtocol.CHECK, idBytes(id)).get() & 0xFF;
+    }
+
+    /**
+     * Asks for a hint, which the server also places on the board.
+     *
+     * @param id the session id of the game.
+     * @return the hint packed as described by {@link GameProtocol}, or -1 if the board is full.
+     * @throws IOException if the request fails or the server answers with an error.
+     */
+    public int hint(long id) throws IOException {
+        ByteBuffer response = post(GameProtocol.HINT, idBytes(id));
+        return response.hasRemaining() ? response.getInt() : -1;
+    }
+
+    /**
+     * Fetches the current board of a game.
+     *
+     * @param id the session id of the game.
+     * @return the board.
+     * @throws IOException if the request fails or the server answers with an error.
+     */
+    public SudokuBoard save(long id) throws IOException {
+        return SudokuBoardCodec.decode(post(GameProtocol.SAVE, idBytes(id)));
+    }
+
+    private static byte[] idBytes(long id) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(id).array();
+    }
+
+    private ByteBuffer post(String path, byte[] body) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(path))
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for " + path, e);
+        }
+        if (response.statusCode() != 200 && response.statusCode() != 204) {
+            throw new IOException(path + " failed with HTTP status " + response.statusCode());
+        }
+        return ByteBuffer.wrap(response.body());
+    }
+
+    /**
+     * Plays one game by sending its solution, {@code batch} moves per request, and returns
+     * the number of moves sent.
+     */
+    private long play(SudokuUtilities.SudokuLevel level, int batch, LatencyHistogram latency) throws IOException {
+        Game game = newGame(level, SudokuUtilities.SECTION_SIZE);
+        SudokuBoard board = game.board();
+        int size = board.getSize();
+        short[] moves = new short[size * size];
+        int count = 0;
+        for (int cell = 0; cell < size * size; cell++) {
+            int row = cell / size;
+            int col = cell % size;
+            if (board.isEditable(row, col)) {
+                moves[count++] = GameProtocol.packMove(cell, board.getSolutionVal(row, col));
+            }
+        }
+        short[] chunk = new short[batch];
+        int status = 0;
+        for (int sent = 0; sent < count; sent += batch) {
+            int length = Math.min(batch, count - sent);
+            System.arraycopy(moves, sent, chunk, 0, length);
+            long start = System.nanoTime();
+            status = move(game.id(), chunk, length);
+            latency.record(System.nanoTime() - start);
+        }
+        if ((status & GameProtocol.STATUS_SOLVED) == 0 || (check(game.id()) & GameProtocol.STATUS_SOLVED) == 0) {
+            throw new IOException("Game " + game.id() + " is not solved after sending its solution");
+        }
+        return count;
+    }
+
+    /**
+     * Runs the load test described above.
+     *
+     * @param args the options described above.
+     * @throws Exception if the server cannot be started or a game fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int players = 64;
+        int games = 20;
+        int batch = 1;
+        try {
+            for (int i = 0; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--url" -> url = args[i + 1];
+                    case "--players" -> players = Integer.parseInt(args[i + 1]);
+                    case "--games" -> games = Integer.parseInt(args[i + 1]);
+                    case "--batch" -> batch = Integer.parseInt(args[i + 1]);
+                    default -> players = -1;
+                }
+            }
+        } catch (NumberFormatException e) {
+            players = -1;
+        }
+        if (args.length % 2 != 0 || players < 1 || games < 1 || batch < 1 || batch > GameProtocol.MAX_MOVES) {
+            System.err.println("Usage: GameClient [--url URL] [--players N] [--games N] [--batch N]");
+            System.exit(2);
+        }
+
+        GameServer server = null;
+        if (url == null) {
+            server = new GameServer(0);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+        GameClient client = new GameClient(URI.create(url));
+        int gamesPerPlayer = games;
+        int movesPerRequest = batch;
+        List<LatencyHistogram> latencies = new ArrayList<>();
+        List<Future<Long>> results = new ArrayList<>();
+
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int player = 0; player < players; player++) {
+                LatencyHistogram latency = new LatencyHistogram();
+                latencies.add(latency);
+                results.add(executor.submit(() -> {
+                    long moves = 0;
+                    for (int game = 0; game < gamesPerPlayer; game++) {
+                        moves += client.play(SudokuUtilities.SudokuLevel.EASY, movesPerRequest, latency);
+                    }
+                    return moves;
+                }));
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long moves = 0;
+        for (Future<Long> result : results) {
+            moves += result.get();
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        latencies.forEach(latency::add);
+        double seconds = elapsed / 1e9;
+
+        System.out.printf("games:      %d by %d players%n", (long) players * games, players);
+        System.out.printf("moves:      %d in %d requests%n", moves, latency.getCount());
+        System.out.printf("elapsed:    %.3f s%n", seconds);
+        System.out.printf("throughput: %.0f moves/s, %.0f requests/s%n", moves / seconds, latency.getCount() / seconds);
+        System.out.printf("latency:    p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                latency.getPercentile(50) / 1e3, latency.getPercentile(99) / 1e3, latency.getMax() / 1e3);
+        if (server != null) {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package kth.server;
+
+import kth.model.SudokuBoard;
+import kth.model.SudokuRater;
+
+/**
+ * The {@code GameProtocol} class defines the binary wire format spoken between
+ * {@code GameServer} and {@code GameClient}. Every request is a {@code POST} with a
+ * binary body and every response is binary; multi-byte values are big-endian.
+ * <pre>
+ *   path          request body                    response body
+ *   /game/new     level (1 byte), box size (1)    session id (8), encoded board
+ *   /game/move    session id (8), moves (2 each)  status (1)
+ *   /game/check   session id (8)                  status (1)
+ *   /game/hint    session id (8)                  hint (4), status (1); empty if the board is full
+ *   /game/save    session id (8)                  encoded board
+ * </pre>
+ * The body of {@code /game/new} may be empty for an easy 9x9 game. Boards are encoded with
+ * {@code SudokuBoardCodec}. A move is packed into 16 bits, the cell index in bits 0-9 and
+ * the new value in bits 10-14, and one request may carry up to {@link #MAX_MOVES} moves,
+ * which are applied in order. A hint is packed into 32 bits, the cell index in bits 0-9,
+ * the value in bits 10-14 and the ordinal of the technique in bits 16-23; the server also
+ * places the hinted value on the board, as the game does. The status byte holds the
+ * {@code STATUS_} bits of the board after the request.
+ * <p>
+ * Errors are reported with the HTTP status alone: 400 for a malformed request, 404 for an
+ * unknown session, 405 for a method other than {@code POST} and 500 if the server fails,
+ * for example when an evicted game cannot be restored.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public final class GameProtocol {
+
+    public static final String NEW_GAME = "/game/new";
+    public static final String MOVE = "/game/move";
+    public static final String CHECK = "/game/check";
+    public static final String HINT = "/game/hint";
+    public static final String SAVE = "/game/save";
+
+    public static final int MAX_MOVES = 1024;
+
+    public static final int STATUS_FILLED = 1;      // Every cell has a value
+    public static final int STATUS_SOLVED = 2;      // Every cell has its solution value
+    public static final int STATUS_CORRECT = 4;     // Every placed value matches the solution
+    public static final int STATUS_CONFLICTS = 8;   // Some row, column or box holds a value twice
+
+    private static final int CELL_BITS = 10;
+    private static final int VALUE_BITS = 5;
+    private static final int CELL_MASK = (1 << CELL_BITS) - 1;
+    private static final int VALUE_MASK = (1 << VALUE_BITS) - 1;
+    private static final int TECHNIQUE_SHIFT = 16;
+
+    private GameProtocol() {
+    }
+
+    /**
+     * Packs a move into 16 bits.
+     *
+     * @param cell the flat index of the cell.
+     * @param value the new value of the cell, 0 to clear it.
+     * @return the packed move.
+     * @throws IllegalArgumentException if the cell or the value does not fit in the packed form.
+     */
+    public static short packMove(int cell, int value) {
+        if ((cell & ~CELL_MASK) != 0 || (value & ~VALUE_MASK) != 0) {
+            throw new IllegalArgumentException("Move out of range: " + cell + ", " + value);
+        }
+        return (short) (cell | value << CELL_BITS);
+    }
+
+    /**
+     * Returns the cell of a packed move or hint.
+     *
+     * @param packed the packed move or hint.
+     * @return the flat index of the cell.
+     */
+    public static int cellOf(int packed) {
+        return packed & CELL_MASK;
+    }
+
+    /**
+     * Returns the value of a packed move or hint.
+     *
+     * @param packed the packed move or hint.
+     * @return the value.
+     */
+    public static int valueOf(int packed) {
+        return (packed >>> CELL_BITS) & VALUE_MASK;
+    }
+
+    /**
+     * Packs a hint into 32 bits.
+     *
+     * @param cell the flat index of the cell.
+     * @param value the value that belongs in the cell.
+     * @param technique the technique that deduces the value.
+     * @return the packed hint.
+     */
+    public static int packHint(int cell, int value, SudokuRater.Technique technique) {
+        return (packMove(cell, value) & 0xFFFF) | technique.ordinal() << TECHNIQUE_SHIFT;
+    }
+
+    /**
+     * Returns the technique of a packed hint.
+     *
+     * @param hint the packed hint.
+     * @return the technique that deduces the value.
+     */
+    public static SudokuRater.Technique techniqueOf(int hint) {
+        return SudokuRater.Technique.values()[(hint >>> TECHNIQUE_SHIFT) & 0xFF];
+    }
+
+    /**
+     * Returns the status bits of a board.
+     *
+     * @param board the board.
+     * @return the {@code STATUS_} bits that apply to the board.
+     */
+    public static int statusOf(SudokuBoard board) {
+        int status = 0;
+        if (board.allCellsFilled()) status |= STATUS_FILLED;
+        if (board.isSolved()) status |= STATUS_SOLVED;
+        if (board.checkPartialSolution()) status |= STATUS_CORRECT;
+        if (board.hasConflicts()) status |= STATUS_CONFLICTS;
+        return status;
+    }
+}
@@ -0,0 +1,331 @@
+package kth.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import kth.io.SudokuBoardCodec;
+import kth.metrics.Metrics;
+import kth.model.BoardListener;
+import kth.model.HintEngine;
+import kth.model.PuzzlePool;
+import kth.model.SudokuBoard;
+import kth.model.SudokuGeometry;
+import kth.model.SudokuHint;
+import kth.model.SudokuUtilities;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+
+/**
+ * Headless entry point that serves Sudoku games over HTTP, without starting the user
+ * interface. The server is built on the JDK's {@code HttpServer} and handles every request
+ * on its own virtual thread, so a request that waits for a game or a new puzzle does not
+ * hold a platform thread. The games are played with the model classes directly and the
+ * requests and responses use the binary format of {@link GameProtocol}.
+ * <p>
+ * The games are kept in a {@code GameSessionRegistry} under a random session id. A game
+ * is only used by one request at a time; requests for different games run in parallel.
+ * New 9x9 games are taken from a {@code PuzzlePool}, other sizes are generated on the
+ * request's thread.
+ * <p>
+ * Usage: {@code GameServer [--port N] [--ttl SECONDS]}. The server listens on the loopback
+ * address only, on port 8080 by default, and evicts games idle for ten minutes unless
+ * another time-to-live is given.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class GameServer implements AutoCloseable {
+
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int SESSION_ID_BYTES = 8;
+    private static final String CONTENT_TYPE = "application/octet-stream";
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final PuzzlePool pool;
+    private final GameSessionRegistry sessions;
+
+    /**
+     * Handles the requests of one endpoint.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        void handle(HttpExchange exchange, ByteBuffer request) throws IOException;
+    }
+
+    /**
+     * Constructs a server listening on the given port of the loopback address, with a
+     * session registry that evicts games idle for ten minutes to memory. The server does
+     * not accept requests until it is started.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @throws IOException if the server socket cannot be bound.
+     */
+    public GameServer(int port) throws IOException {
+        this(port, new GameSessionRegistry());
+    }
+
+    /**
+     * Constructs a server listening on the given port of the loopback address that keeps
+     * its games in the given registry. The server does not accept requests until it is
+     * started, and closes the registry when it is closed.
+     *
+     * @param port the port to listen on, or 0 for any free port.
+     * @param sessions the registry holding the games.
+     * @throws IOException if the server socket cannot be bound.
+     */
+    public GameServer(int port, GameSessionRegistry sessions) throws IOException {
+        // Small responses would otherwise wait for the client's delayed acknowledgement
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.pool = new PuzzlePool();
+        this.sessions = sessions;
+        server.setExecutor(executor);
+        register(GameProtocol.NEW_GAME, this::newGame);
+        register(GameProtocol.MOVE, sessionEndpoint(this::move));
+        register(GameProtocol.CHECK, sessionEndpoint(this::check));
+        register(GameProtocol.HINT, sessionEndpoint(this::hint));
+        register(GameProtocol.SAVE, sessionEndpoint(this::save));
+    }
+
+    /**
+     * Starts accepting requests and fills the puzzle pool in the background.
+     */
+    public void start() {
+        pool.prefill();
+        server.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Returns the registry holding the games.
+     *
+     * @return the session registry.
+     */
+    public GameSessionRegistry getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Stops accepting requests, waits at most a second for the running ones and stops
+     * evicting games.
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.close();
+        pool.close();
+        sessions.close();
+    }
+
+    /**
+     * Adapts an action on one game to an endpoint. The request starts with the session id;
+     * the action gets the rest of it and runs while holding the game's lock. Answers 404
+     * if there is no such game.
+     */
+    private Endpoint sessionEndpoint(BiFunction<GameSession, ByteBuffer, ByteBuffer> action) {
+        return (exchange, request) -> {
+            long id = request.getLong();
+            ByteBuffer response = sessions.withSession(id, session -> action.apply(session, request));
+            if (response == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                send(exchange, response);
+            }
+        };
+    }
+
+    private void register(String path, Endpoint endpoint) {
+        server.createContext(path, exchange -> {
+            try (exchange) {
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                try {
+                    endpoint.handle(exchange, readBody(exchange));
+                } catch (IllegalArgumentException | BufferUnderflowException e) {
+                    sendError(exchange, 400);
+                } catch (IOException e) {
+                    // For example a game that could not be restored from the spill store
+                    System.err.println("Request to " + path + " failed: " + e.getMessage());
+                    sendError(exchange, 500);
+                }
+            }
+        });
+    }
+
+    /**
+     * Answers with an error status, unless the response has already been started.
+     */
+    private static void sendError(HttpExchange exchange, int status) throws IOException {
+        if (exchange.getResponseCode() == -1) {
+            exchange.sendResponseHeaders(status, -1);
+        }
+    }
+
+    private void newGame(HttpExchange exchange, ByteBuffer request) throws IOException {
+        SudokuUtilities.SudokuLevel level = SudokuUtilities.SudokuLevel.EASY;
+        int boxSize = SudokuUtilities.SECTION_SIZE;
+        if (request.hasRemaining()) {
+            int ordinal = request.get();
+            boxSize = request.get();
+            if (ordinal < 0 || ordinal >= SudokuUtilities.SudokuLevel.values().length) {
+                throw new IllegalArgumentException("Invalid difficulty level: " + ordinal);
+            }
+            level = SudokuUtilities.SudokuLevel.values()[ordinal];
+        }
+        SudokuBoard board = createBoard(level, SudokuGeometry.of(boxSize));
+        ByteBuffer response = ByteBuffer.allocate(SESSION_ID_BYTES
+                + SudokuBoardCodec.maxEncodedSize(board.getGeometry()));
+        // The board is encoded before it is registered, because from then on it is the session's
+        response.position(SESSION_ID_BYTES);
+        SudokuBoardCodec.encode(board, response);
+        response.putLong(0, sessions.create(board));
+        send(exchange, response);
+    }
+
+    private ByteBuffer move(GameSession session, ByteBuffer request) {
+        int moves = request.remaining() / Short.BYTES;
+        if (moves == 0 || moves > GameProtocol.MAX_MOVES || request.remaining() % Short.BYTES != 0) {
+            throw new IllegalArgumentException("Invalid number of move bytes: " + request.remaining());
+        }
+        // The whole request is checked first, so a bad move does not leave half of it applied
+        SudokuBoard board = session.getBoard();
+        int size = board.getSize();
+        int start = request.position();
+        for (int i = 0; i < moves; i++) {
+            int move = request.getShort(start + i * Short.BYTES);
+            if (GameProtocol.cellOf(move) >= size * size || GameProtocol.valueOf(move) > size) {
+                throw new IllegalArgumentException("Invalid move: " + move);
+            }
+        }
+        for (int i = 0; i < moves; i++) {
+            int move = request.getShort();
+            int cell = GameProtocol.cellOf(move);
+            board.setCellVal(cell / size, cell % size, GameProtocol.valueOf(move), BoardListener.PLAYER);
+        }
+        return status(board);
+    }
+
+    private ByteBuffer check(GameSession session, ByteBuffer request) {
+        SudokuBoard board = session.getBoard();
+        Metrics.recordCheck(board.getFilledCount(), board.isSolved(), board.checkPartialSolution(), board.hasConflicts());
+        return status(board);
+    }
+
+    private ByteBuffer hint(GameSession session, ByteBuffer request) {
+        SudokuBoard board = session.getBoard();
+        SudokuHint hint = HintEngine.findHint(board, session.getRandom());
+        ByteBuffer response = ByteBuffer.allocate(Integer.BYTES + 1);
+        if (hint != null) {
+            board.setCellVal(hint.getRow(), hint.getCol(), hint.getValue(), BoardListener.HINT);
+            response.putInt(GameProtocol.packHint(hint.getRow() * board.getSize() + hint.getCol(),
+                    hint.getValue(), hint.getTechnique()));
+            response.put((byte) GameProtocol.statusOf(board));
+        }
+        return response;
+    }
+
+    private ByteBuffer save(GameSession session, ByteBuffer request) {
+        SudokuBoard board = session.getBoard();
+        ByteBuffer response = ByteBuffer.allocate(SudokuBoardCodec.maxEncodedSize(board.getGeometry()));
+        SudokuBoardCodec.encode(board, response);
+        return response;
+    }
+
+    /**
+     * Creates the board of a new game.
+     */
+    private SudokuBoard createBoard(SudokuUtilities.SudokuLevel level, SudokuGeometry geometry) {
+        int size = geometry.getSize();
+        int[][][] matrix = geometry.getBoxSize() == SudokuUtilities.SECTION_SIZE ? pool.take(level)
+                : SudokuUtilities.generateSudokuMatrix(level, geometry.getBoxSize());
+        int[][] puzzle = new int[size][size];
+        int[][] solution = new int[size][size];
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                puzzle[row][col] = matrix[row][col][0];
+                solution[row][col] = matrix[row][col][1];
+            }
+        }
+        return new SudokuBoard(puzzle, solution);
+    }
+
+    private static ByteBuffer readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return ByteBuffer.wrap(in.readNBytes(SESSION_ID_BYTES + GameProtocol.MAX_MOVES * Short.BYTES + 1));
+        }
+    }
+
+    private static ByteBuffer status(SudokuBoard board) {
+        return ByteBuffer.allocate(1).put((byte) GameProtocol.statusOf(board));
+    }
+
+    private static void send(HttpExchange exchange, ByteBuffer response) throws IOException {
+        if (response.position() == 0) {
+            exchange.sendResponseHeaders(204, -1);
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, response.position());
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response.array(), 0, response.position());
+        }
+    }
+
+    /**
+     * Starts a server on the port given on the command line and serves games until the
+     * process is stopped.
+     *
+     * @param args optionally {@code --port N} and {@code --ttl SECONDS}; the usage is printed
+     *             if they are not valid.
+     * @throws IOException if the server socket cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        Duration timeToLive = GameSessionRegistry.DEFAULT_TIME_TO_LIVE;
+        boolean valid = args.length % 2 == 0;
+        try {
+            for (int i = 0; valid && i < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[i + 1]);
+                    case "--ttl" -> timeToLive = Duration.ofSeconds(Long.parseLong(args[i + 1]));
+                    default -> valid = false;
+                }
+            }
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        if (!valid || port < 0 || port > 65535 || timeToLive.isNegative() || timeToLive.isZero()) {
+            System.err.println("Usage: GameServer [--port N] [--ttl SECONDS]");
+            System.exit(2);
+        }
+        GameServer server = new GameServer(port, new GameSessionRegistry(SpillStore.inMemory(), timeToLive));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Serving Sudoku games on http://localhost:" + server.getPort() + "/game");
+    }
+}
@@ -0,0 +1,71 @@
+package kth.server;
+
+import kth.model.SudokuBoard;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The {@code GameSession} class holds one game kept by a {@code GameSessionRegistry}: the
+ * board and the random source for its hints. A session is only handed out while the
+ * registry holds its lock, so its board is never used by two threads at once. The lock is a
+ * {@code ReentrantLock} rather than the session's monitor, because the sessions are used by
+ * virtual threads, which a monitor would pin to their carrier thread while they wait.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public final class GameSession {
+    private final long id;
+    private final SplittableRandom random = new SplittableRandom();
+    final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock; lastAccess is also read without it by the sweeper
+    private SudokuBoard board;
+    volatile long lastAccess;
+    boolean evicted;
+
+    /**
+     * Constructs a session; {@code board} is {@code null} for a session that is being
+     * restored, whose lock is then taken before the session is published.
+     */
+    GameSession(long id, SudokuBoard board, long now) {
+        this.id = id;
+        this.board = board;
+        this.lastAccess = now;
+    }
+
+    /**
+     * Sets the board of a session being restored; the caller holds the lock.
+     */
+    void setBoard(SudokuBoard board) {
+        this.board = board;
+    }
+
+    /**
+     * Returns the session id.
+     *
+     * @return the id.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Returns the board of the game.
+     *
+     * @return the board.
+     */
+    public SudokuBoard getBoard() {
+        return board;
+    }
+
+    /**
+     * Returns the random source for picking the cells revealed by hints.
+     *
+     * @return the random source.
+     */
+    public SplittableRandom getRandom() {
+        return random;
+    }
+}
@@ -0,0 +1,268 @@
+package kth.server;
+
+import kth.io.SudokuBoardCodec;
+import kth.model.SudokuBoard;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The {@code GameSessionRegistry} class holds any number of independent games, keyed by a
+ * random session id, and lets many threads play them at once.
+ * <p>
+ * Looking up a session is a lock-free read of a {@code ConcurrentHashMap}, and every session
+ * is guarded by its own {@code ReentrantLock}, which is held while an action runs on it. No
+ * monitor is held while waiting for a session or while reading the spill store, so the
+ * virtual threads of the server never pin their carrier threads here. Actions on the same
+ * game therefore run one after the other, while actions on different games never wait for
+ * each other.
+ * <p>
+ * A session that has not been used for longer than the time-to-live is evicted by a
+ * background sweeper: its board is encoded with {@code SudokuBoardCodec} into the spill
+ * store and the live board is dropped. The next action on the session decodes the board
+ * again, so eviction is invisible to the players apart from the time the first action takes.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class GameSessionRegistry implements AutoCloseable {
+
+    public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private final ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final SpillStore spill;
+    private final long timeToLive;
+    private final ScheduledExecutorService sweeper;
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder restores = new LongAdder();
+
+    /**
+     * Constructs a registry that evicts sessions idle for {@link #DEFAULT_TIME_TO_LIVE} to an
+     * in-memory spill store.
+     */
+    public GameSessionRegistry() {
+        this(SpillStore.inMemory(), DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Constructs a registry that evicts idle sessions to the given spill store. The sweeper
+     * looks for idle sessions four times per time-to-live.
+     *
+     * @param spill the store receiving the evicted games.
+     * @param timeToLive how long a session may be idle before it is evicted.
+     * @throws IllegalArgumentException if the time-to-live is not positive.
+     */
+    public GameSessionRegistry(SpillStore spill, Duration timeToLive) {
+        if (timeToLive.isNegative() || timeToLive.isZero()) {
+            throw new IllegalArgumentException("Invalid time-to-live: " + timeToLive);
+        }
+        this.spill = spill;
+        this.timeToLive = timeToLive.toNanos();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sudoku-session-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, this.timeToLive / 4);
+        sweeper.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds a new game under a fresh random session id.
+     *
+     * @param board the board of the game; it must not be used by the caller afterwards.
+     * @return the session id.
+     */
+    public long create(SudokuBoard board) {
+        long now = System.nanoTime();
+        while (true) {
+            long id = ThreadLocalRandom.current().nextLong();
+            if (!spill.contains(id) && sessions.putIfAbsent(id, new GameSession(id, board, now)) == null) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Runs an action on a game while holding the game's lock, restoring the game from the
+     * spill store first if it has been evicted.
+     *
+     * @param id the session id.
+     * @param action the action; must not return {@code null}.
+     * @param <T> the type of the result.
+     * @return the result of the action, or {@code null} if there is no game with that id.
+     * @throws IOException if an evicted game cannot be restored.
+     */
+    public <T> T withSession(long id, Function<GameSession, T> action) throws IOException {
+        while (true) {
+            GameSession session = sessions.get(id);
+            if (session == null) {
+                session = restore(id);
+                if (session == null) {
+                    return null;
+                }
+            }
+            session.lock.lock();
+            try {
+                // An evicted session is replaced by the restored one, so look it up again
+                if (!session.evicted) {
+                    session.lastAccess = System.nanoTime();
+                    return action.apply(session);
+                }
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes a game, whether it is live or evicted.
+     *
+     * @param id the session id.
+     * @return {@code true} if there was a game with that id.
+     * @throws IOException if the spill store fails.
+     */
+    public boolean remove(long id) throws IOException {
+        GameSession session = sessions.remove(id);
+        if (session != null) {
+            session.lock.lock();
+            try {
+                session.evicted = true;
+            } finally {
+                session.lock.unlock();
+            }
+        }
+        // The sweeper may have spilled the game while this thread waited for the lock
+        boolean spilled = spill.take(id) != null;
+        return session != null || spilled;
+    }
+
+    /**
+     * Returns the number of games held in memory.
+     *
+     * @return the number of live games.
+     */
+    public int getLiveCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Returns the number of games in the spill store.
+     *
+     * @return the number of evicted games.
+     */
+    public int getSpilledCount() {
+        return spill.size();
+    }
+
+    /**
+     * Returns the number of times a game has been evicted.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of times an evicted game has been restored.
+     *
+     * @return the number of restores.
+     */
+    public long getRestores() {
+        return restores.sum();
+    }
+
+    /**
+     * Evicts every game that has been idle for longer than the time-to-live. Called by the
+     * sweeper, but may also be called directly.
+     */
+    public void evictIdle() {
+        long now = System.nanoTime();
+        for (GameSession session : sessions.values()) {
+            if (now - session.lastAccess > timeToLive) {
+                session.lock.lock();
+                try {
+                    if (!session.evicted && now - session.lastAccess > timeToLive) {
+                        evict(session);
+                    }
+                } finally {
+                    session.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the sweeper. The games stay where they are.
+     */
+    @Override
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Moves a session to the spill store; the caller holds its lock. A session that cannot
+     * be stored stays live.
+     */
+    private void evict(GameSession session) {
+        try {
+            spill.put(session.getId(), SudokuBoardCodec.encode(session.getBoard()));
+        } catch (IOException e) {
+            System.err.println("Could not evict session " + session.getId() + ": " + e.getMessage());
+            return;
+        }
+        session.evicted = true;
+        sessions.remove(session.getId(), session);
+        evictions.increment();
+    }
+
+    /**
+     * Takes a game from the spill store and makes it live again. An empty session is
+     * published first with its lock held, so other threads asking for the game wait on that
+     * lock, and two threads never restore the same game; the spill store is read outside
+     * of the map's update. The game is only taken out of the store once it has been decoded,
+     * so a game that fails to decode or to be read stays there.
+     *
+     * @return the live session, or {@code null} if the game is neither live nor spilled.
+     */
+    private GameSession restore(long id) throws IOException {
+        GameSession restoring = new GameSession(id, null, System.nanoTime());
+        restoring.lock.lock();
+        try {
+            GameSession live = sessions.putIfAbsent(id, restoring);
+            if (live != null) {
+                return live;
+            }
+            boolean restored = false;
+            try {
+                // The bytes are only removed once they have been decoded, so a game that
+                // cannot be restored stays in the store
+                byte[] data = spill.get(id);
+                if (data != null) {
+                    restoring.setBoard(SudokuBoardCodec.decode(data));
+                    if (spill.take(id) != null) {  // Unless the game was removed meanwhile
+                        restores.increment();
+                        restored = true;
+                    }
+                }
+            } finally {
+                if (!restored) {
+                    // Threads waiting for the session see it as evicted and look the game up again
+                    restoring.evicted = true;
+                    sessions.remove(id, restoring);
+                }
+            }
+            return restored ? restoring : null;
+        } finally {
+            restoring.lock.unlock();
+        }
+    }
+}
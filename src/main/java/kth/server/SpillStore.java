@@ -0,0 +1,94 @@
+package kth.server;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@code SpillStore} keeps the games a {@code GameSessionRegistry} has evicted, encoded
+ * with {@code SudokuBoardCodec}, until they are used again. Implementations must be
+ * thread-safe.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public interface SpillStore {
+
+    /**
+     * Stores an evicted game.
+     *
+     * @param id the session id.
+     * @param data the encoded board.
+     * @throws IOException if the game cannot be stored.
+     */
+    void put(long id, byte[] data) throws IOException;
+
+    /**
+     * Returns a game from the store without removing it.
+     *
+     * @param id the session id.
+     * @return the encoded board, or {@code null} if the store holds no game with that id.
+     * @throws IOException if the game cannot be read.
+     */
+    byte[] get(long id) throws IOException;
+
+    /**
+     * Removes a game from the store and returns it.
+     *
+     * @param id the session id.
+     * @return the encoded board, or {@code null} if the store holds no game with that id.
+     * @throws IOException if the game cannot be read.
+     */
+    byte[] take(long id) throws IOException;
+
+    /**
+     * Returns whether the store holds a game with the given id.
+     *
+     * @param id the session id.
+     * @return {@code true} if the game is in the store.
+     */
+    boolean contains(long id);
+
+    /**
+     * Returns the number of games in the store.
+     *
+     * @return the number of games.
+     */
+    int size();
+
+    /**
+     * Returns a store that keeps the encoded games in memory, about a hundred bytes for a
+     * 9x9 game instead of the arrays of a live {@code SudokuBoard}.
+     *
+     * @return a new, empty store.
+     */
+    static SpillStore inMemory() {
+        Map<Long, byte[]> games = new ConcurrentHashMap<>();
+        return new SpillStore() {
+            @Override
+            public void put(long id, byte[] data) {
+                games.put(id, data);
+            }
+
+            @Override
+            public byte[] get(long id) {
+                return games.get(id);
+            }
+
+            @Override
+            public byte[] take(long id) {
+                return games.remove(id);
+            }
+
+            @Override
+            public boolean contains(long id) {
+                return games.containsKey(id);
+            }
+
+            @Override
+            public int size() {
+                return games.size();
+            }
+        };
+    }
+}
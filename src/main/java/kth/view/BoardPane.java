@@ -3,40 +3,103 @@ package kth.view;
 import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.*;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.scene.layout.GridPane;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
-import javafx.scene.text.Font;
-import javafx.scene.text.FontWeight;
 import javafx.geometry.Pos;
 import javafx.stage.Stage;
 import kth.controller.SudokuController;
+import kth.model.BoardChangeSet;
+import kth.model.BoardListener;
 import kth.model.SudokuBoard;
+import kth.model.SudokuGeometry;
 import kth.model.SudokuUtilities;
 
 /**
  * The {@code BoardPane} class represents the UI for the Sudoku board, managing both
  * the visual grid and user interactions with the puzzle. This pane also initializes
  * the control panel and handles updates to the board.
+ * <p>
+ * Changes to the cells are not applied one by one. Every update records the new state of
+ * the cell and marks it in a dirty bitmap, and a single render pulse on the JavaFX
+ * application thread then hands all pending changes to the {@link BoardRenderer},
+ * skipping cells whose state did not change. By default the cells are {@code Label}s
+ * styled by {@code board.css}; a {@link CanvasBoardRenderer} can be passed in instead.
+ * <p>
+ * Registered as a {@link BoardListener}, the pane follows the board on its own: every move
+ * updates its cell and the pencil marks, and a reset or new game updates the changed cells.
  *
  * @author Majd & Marvin
  * @version 1.0
  */
-public class BoardPane extends GridPane {
-    private final Label[][] numberTiles = new Label[9][9];
+public class BoardPane extends GridPane implements BoardListener {
+    private final BoardRenderer renderer;
+    private final int size;
+    private final int cellCount;
     private SudokuController controller;
     private final VBox controlPanel;
     private SudokuBoard sudokuBoard;
     private int[][] puzzle;
     private int[][] initialPuzzle;
+    private boolean showCandidates;
+    private boolean clearCandidates;
+    private int selectedCell = -1;
+
+    // Guarded by pendingLock: the state every cell should get and the cells that changed
+    private final Object pendingLock = new Object();
+    private final long[] pendingStates;
+    private final long[] dirty;
+    private boolean pulseScheduled;
+
+    // Only used on the JavaFX application thread
+    private final long[] renderedStates;
+    private final long[] pulseStates;
+    private final long[] pulseDirty;
 
     /**
-     * Constructs a new {@code BoardPane} object with a given Sudoku puzzle.
-     * This constructor initializes the board and the control panel with buttons.
+     * Constructs a new {@code BoardPane} object with a given Sudoku puzzle, drawn with one
+     * {@code Label} per cell. This constructor initializes the board and the control panel
+     * with buttons.
      *
      * @param puzzle the initial Sudoku puzzle in a 2D integer array format.
      */
     public BoardPane(int[][] puzzle) {
+        this(puzzle, new TileBoardRenderer(puzzle.length));
+    }
+
+    /**
+     * Constructs a new {@code BoardPane} object with a given Sudoku puzzle, drawn by the
+     * given renderer.
+     *
+     * @param puzzle the initial Sudoku puzzle in a 2D integer array format.
+     * @param renderer the renderer that draws the cells.
+     * @throws IllegalArgumentException if the renderer is not made for the size of the puzzle.
+     */
+    public BoardPane(int[][] puzzle, BoardRenderer renderer) {
+        if (renderer.getSize() != puzzle.length) {
+            throw new IllegalArgumentException("Renderer size " + renderer.getSize()
+                    + " does not match puzzle size " + puzzle.length);
+        }
         this.puzzle = puzzle;
+        this.renderer = renderer;
+        this.size = renderer.getSize();
+        this.cellCount = size * size;
+        this.pendingStates = new long[cellCount];
+        this.dirty = new long[(cellCount + 63) >>> 6];
+        this.renderedStates = new long[cellCount];
+        this.pulseStates = new long[cellCount];
+        this.pulseDirty = new long[dirty.length];
+
+        getStylesheets().add(BoardPane.class.getResource("board.css").toExternalForm());
+        renderer.setCellClickListener((row, col) -> {
+            if (controller != null) {
+                controller.handleCellClick(row, col);
+            }
+        });
+        getChildren().add(renderer.getNode());
         initializeBoard(puzzle);
         controlPanel = initializeControlPanel();
     }
@@ -52,66 +115,42 @@ public class BoardPane extends GridPane {
     }
 
     /**
-     * Initializes the Sudoku board by creating a grid of tiles based on the given puzzle.
-     * It organizes the tiles into 3x3 sections and sets up event handlers for user input.
+     * Shows a new puzzle on the board. The given cells are locked and shown in bold; all
+     * cells are updated in a single render pulse.
      *
      * @param puzzle the 2D integer array representing the Sudoku puzzle to display.
      */
     public void initializeBoard(int[][] puzzle) {
-        this.getChildren().clear();
         this.initialPuzzle = puzzle;
-
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
-                numberTiles[row][col] = null;
+        synchronized (pendingLock) {
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    int value = puzzle[row][col];
+                    int cell = row * size + col;
+                    long selected = cell == selectedCell ? TileState.SELECTED : 0;
+                    setPending(cell, (value != 0 ? TileState.ofValue(value) | TileState.GIVEN : 0) | selected);
+                }
             }
         }
+    }
 
-        Font font = Font.font("Monospaced", FontWeight.NORMAL, 20);
-        GridPane root = new GridPane();
-        root.setPadding(new Insets(35, 20, 0, 10));
-
-        for (int sectionRow = 0; sectionRow < 3; sectionRow++) {
-            for (int sectionCol = 0; sectionCol < 3; sectionCol++) {
-                GridPane section = new GridPane();
-                section.setStyle("-fx-border-color: black; -fx-border-width: 3px;");
-
-                for (int row = 0; row < 3; row++) {
-                    for (int col = 0; col < 3; col++) {
-                        int actualRow = sectionRow * 3 + row;
-                        int actualCol = sectionCol * 3 + col;
-                        int value = puzzle[actualRow][actualCol];
-
-                        Label tile = new Label(value == 0 ? "" : String.valueOf(value));
-                        tile.setPrefSize(50, 50);
-                        tile.setFont(font);
-                        tile.setAlignment(Pos.CENTER);
-                        tile.setStyle("-fx-border-color: black; -fx-border-width: 1px;");
-
-                        if (value != 0) {
-                            tile.setStyle(tile.getStyle() + "-fx-font-weight: bold; -fx-background-color: lightgray;");
-                            tile.setMouseTransparent(true);
-                        } else {
-                            final int finalRow = actualRow;
-                            final int finalCol = actualCol;
-                            tile.setOnMouseClicked(event -> {
-                                if (controller.getSelectedNumber() != 0) {
-                                    tile.setText(String.valueOf(controller.getSelectedNumber()));
-                                    controller.handleCellClick(finalRow, finalCol);
-                                }
-                            });
-                        }
-
-                        numberTiles[actualRow][actualCol] = tile;
-                        section.add(tile, col, row);
-                    }
-                }
-
-                root.add(section, sectionCol, sectionRow);
+    /**
+     * Highlights the selected cell, removing the highlight from the previously selected one.
+     *
+     * @param row the row index of the selected cell, or -1 to clear the selection.
+     * @param col the column index of the selected cell, or -1 to clear the selection.
+     */
+    public void setSelection(int row, int col) {
+        int cell = row < 0 || col < 0 ? -1 : row * size + col;
+        synchronized (pendingLock) {
+            if (selectedCell != -1) {
+                setPending(selectedCell, pendingStates[selectedCell] & ~TileState.SELECTED);
+            }
+            selectedCell = cell;
+            if (cell != -1) {
+                setPending(cell, pendingStates[cell] | TileState.SELECTED);
             }
         }
-
-        this.getChildren().add(root);
     }
 
     /**
@@ -125,23 +164,36 @@ public class BoardPane extends GridPane {
     }
 
     /**
-     * Initializes the control panel which contains buttons numbered 1-9 for user input,
-     * as well as a clear button to reset a selected cell.
+     * Initializes the control panel which contains one button per value for user input,
+     * 1-9 on the standard board and letters for the values past 9 on larger boards, as
+     * well as a clear button to reset a selected cell. On boards larger than 9x9 the
+     * buttons are laid out in rows of one box width.
      *
      * @return the control panel {@code VBox}.
      */
     private VBox initializeControlPanel() {
         VBox panel = new VBox(10);
-        for (int i = 1; i <= 9; i++) {
-            Button numButton = new Button(String.valueOf(i));
-            numButton.setPrefSize(50, 50);
+        int perRow = size <= 9 ? 1 : (int) Math.round(Math.sqrt(size));
+        double buttonSize = size <= 9 ? 50 : 36;
+        HBox buttonRow = null;
+        for (int i = 1; i <= size; i++) {
+            Button numButton = new Button(TileState.textOf(i));
+            numButton.setPrefSize(buttonSize, buttonSize);
             int finalI = i;
             numButton.setOnAction(event -> controller.setSelectedNumber(finalI));
-            panel.getChildren().add(numButton);
+            if (perRow == 1) {
+                panel.getChildren().add(numButton);
+                continue;
+            }
+            if ((i - 1) % perRow == 0) {
+                buttonRow = new HBox(4);
+                panel.getChildren().add(buttonRow);
+            }
+            buttonRow.getChildren().add(numButton);
         }
 
         Button clearButton = new Button("C");
-        clearButton.setPrefSize(50, 50);
+        clearButton.setPrefSize(buttonSize, buttonSize);
         clearButton.setOnAction(event -> controller.clearSelectedCell());
         panel.getChildren().add(clearButton);
 
@@ -149,11 +201,11 @@ public class BoardPane extends GridPane {
     }
 
     /**
-     * Creates a {@code VBox} with "Check" and "Hint" buttons, used to check the
-     * solution of the puzzle or give a hint to the player.
+     * Creates a {@code VBox} with "Check", "Hint", "Undo" and "Redo" buttons, used to check
+     * the solution of the puzzle, give a hint to the player or step through the moves.
      *
      * @param controller the {@code SudokuController} that handles the button actions.
-     * @return a {@code VBox} containing the "Check" and "Hint" buttons.
+     * @return a {@code VBox} containing the buttons.
      */
     public VBox createLeftButtons(SudokuController controller) {
         VBox vbox = new VBox();
@@ -167,7 +219,13 @@ public class BoardPane extends GridPane {
         Button hintButton = new Button("Hint");
         hintButton.setOnAction(event -> controller.giveHint());
 
-        vbox.getChildren().addAll(checkButton, hintButton);
+        Button undoButton = new Button("Undo");
+        undoButton.setOnAction(event -> controller.undo());
+
+        Button redoButton = new Button("Redo");
+        redoButton.setOnAction(event -> controller.redo());
+
+        vbox.getChildren().addAll(checkButton, hintButton, undoButton, redoButton);
         return vbox;
     }
 
@@ -196,13 +254,22 @@ public class BoardPane extends GridPane {
         MenuItem easy = new MenuItem("Easy");
         MenuItem medium = new MenuItem("Medium");
         MenuItem hard = new MenuItem("Hard");
+        CheckMenuItem candidates = new CheckMenuItem("Show candidates");
+        MenuItem undo = new MenuItem("Undo");
+        MenuItem redo = new MenuItem("Redo");
+        undo.setAccelerator(new KeyCodeCombination(KeyCode.Z, KeyCombination.SHORTCUT_DOWN));
+        redo.setAccelerator(new KeyCodeCombination(KeyCode.Y, KeyCombination.SHORTCUT_DOWN));
 
         newGame.setOnAction(event -> controller.setDifficulty(controller.getDifficulty()));
         easy.setOnAction(event -> controller.setDifficulty(SudokuUtilities.SudokuLevel.EASY));
         medium.setOnAction(event -> controller.setDifficulty(SudokuUtilities.SudokuLevel.MEDIUM));
         hard.setOnAction(event -> controller.setDifficulty(SudokuUtilities.SudokuLevel.HARD));
+        candidates.setOnAction(event -> controller.setShowCandidates(candidates.isSelected()));
+        undo.setOnAction(event -> controller.undo());
+        redo.setOnAction(event -> controller.redo());
 
-        gameMenu.getItems().addAll(newGame, easy, medium, hard);
+        gameMenu.getItems().addAll(newGame, easy, medium, hard, new SeparatorMenuItem(), undo, redo,
+                new SeparatorMenuItem(), candidates);
 
         Menu helpMenu = new Menu("Help");
         MenuItem restart = new MenuItem("Restart game");
@@ -214,8 +281,8 @@ public class BoardPane extends GridPane {
             alert.setTitle("About");
             alert.setHeaderText("How to play sudoku");
             alert.setContentText("Sudoku is a puzzle where the goal is to fill the entire " +
-                    "grid with numbers 1 - 9. Each row, column, and subgrid cannot contain " +
-                    "the same number more than once.");
+                    "grid with numbers 1 - 9, or on larger boards also the letters from A. " +
+                    "Each row, column, and subgrid cannot contain the same number more than once.");
             alert.showAndWait();
         });
 
@@ -231,6 +298,7 @@ public class BoardPane extends GridPane {
     /**
      * Updates the value of the tile at the specified row and column. This method
      * can also apply special styles to hint tiles, which lock the tile and change its appearance.
+     * The change is applied with the next render pulse.
      *
      * @param row the row index of the tile to update.
      * @param col the column index of the tile to update.
@@ -238,39 +306,147 @@ public class BoardPane extends GridPane {
      * @param isHint whether the tile is a hint (applies special styles and locks it).
      */
     public void updateCell(int row, int col, int value, boolean isHint) {
-        Platform.runLater(() -> {
-            if (numberTiles[row][col] != null) {
-                if (value != 0) {
-                    numberTiles[row][col].setText(String.valueOf(value));
-
-                    if (isHint) {
-                        numberTiles[row][col].setDisable(true);
-                        numberTiles[row][col].setStyle("-fx-font-weight: bold; -fx-background-color: lightblue;" +
-                                "-fx-text-fill: black; -fx-border-color: black; -fx-alignment: center;");
-                    } else {
-                        numberTiles[row][col].setDisable(false);
-                    }
-                } else {
-                    numberTiles[row][col].setText("");
-                    numberTiles[row][col].setDisable(false);
-                    numberTiles[row][col].setStyle("-fx-border-color: black; -fx-alignment: center;");
+        int cell = row * size + col;
+        synchronized (pendingLock) {
+            if (TileState.is(pendingStates[cell], TileState.GIVEN)) {
+                return;
+            }
+            long state = value == 0 ? 0 : TileState.ofValue(value) | (isHint ? TileState.HINT : 0);
+            setPending(cell, state | (pendingStates[cell] & TileState.SELECTED));
+        }
+    }
+
+    /**
+     * Shows a move reported by the board. Values placed by a hint are locked. A move only
+     * changes the candidates of the cell and its peers, so only their pencil marks are updated.
+     */
+    @Override
+    public void cellChanged(SudokuBoard board, int cell, int oldValue, int newValue, int cause) {
+        updateCell(cell / size, cell % size, newValue, cause == BoardListener.HINT);
+        if (clearCandidates) {
+            updateCandidates(board);  // Pencil marks were just hidden, so clear them everywhere
+        } else if (showCandidates) {
+            SudokuGeometry geometry = board.getGeometry();
+            synchronized (pendingLock) {
+                updateCandidates(board, cell);
+                for (int i = 0; i < geometry.getPeerCount(); i++) {
+                    updateCandidates(board, geometry.peerOf(cell, i));
                 }
             }
-        });
+        }
+    }
+
+    /**
+     * Shows the cells changed by a reset or a new game, reading whether each cell is given
+     * from the board, and updates the pencil marks.
+     */
+    @Override
+    public void boardChanged(SudokuBoard board, BoardChangeSet changes) {
+        synchronized (pendingLock) {
+            for (int i = 0; i < changes.size(); i++) {
+                int cell = changes.cellAt(i);
+                int value = changes.newValueAt(i);
+                boolean given = !board.isEditable(cell / size, cell % size);
+                long state = TileState.ofValue(value) | (given && value != 0 ? TileState.GIVEN : 0);
+                setPending(cell, state | (pendingStates[cell] & TileState.SELECTED));
+            }
+        }
+        updateCandidates(board);
+    }
+
+    /**
+     * Sets whether the candidates of empty cells are shown as pencil marks. Call
+     * {@link #updateCandidates(SudokuBoard)} afterwards to show or hide them.
+     *
+     * @param showCandidates {@code true} to show the candidates.
+     */
+    public void setShowCandidates(boolean showCandidates) {
+        this.clearCandidates |= this.showCandidates && !showCandidates;
+        this.showCandidates = showCandidates;
+    }
+
+    /**
+     * Shows the candidates of every empty cell as pencil marks, or clears the pencil marks
+     * if they are hidden. The candidates are read from the board right away and applied
+     * with the next render pulse.
+     *
+     * @param board the {@code SudokuBoard} model holding the candidates.
+     */
+    public void updateCandidates(SudokuBoard board) {
+        if (!showCandidates && !clearCandidates) {
+            return;
+        }
+        clearCandidates = false;
+        synchronized (pendingLock) {
+            for (int cell = 0; cell < cellCount; cell++) {
+                updateCandidates(board, cell);
+            }
+        }
+    }
+
+    /**
+     * Shows or clears the pencil marks of one cell if it is empty. Called with
+     * {@code pendingLock} held.
+     */
+    private void updateCandidates(SudokuBoard board, int cell) {
+        if (board.getCellVal(cell / size, cell % size) == 0) {
+            int mask = showCandidates ? board.getCandidates(cell / size, cell % size) : 0;
+            setPending(cell, TileState.ofCandidates(mask) | (pendingStates[cell] & TileState.SELECTED));
+        }
     }
 
     /**
      * Updates the entire board by fetching the current values from the model and
-     * setting them in the corresponding tiles in the view.
+     * setting them in the corresponding tiles in the view. Only the tiles that changed
+     * are redrawn, all in one render pulse.
      *
      * @param board the {@code SudokuBoard} model representing the current game state.
      */
     public void updateBoard(SudokuBoard board) {
-        for (int row = 0; row < 9; row++) {
-            for (int col = 0; col < 9; col++) {
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
                 int value = board.getCellVal(row, col);
                 updateCell(row, col, value, false);
             }
         }
     }
+
+    /**
+     * Records the state a cell should get and schedules a render pulse if none is pending.
+     * Called with {@code pendingLock} held.
+     */
+    private void setPending(int cell, long state) {
+        if (pendingStates[cell] == state) {
+            return;
+        }
+        pendingStates[cell] = state;
+        dirty[cell >>> 6] |= 1L << cell;
+        if (!pulseScheduled) {
+            pulseScheduled = true;
+            Platform.runLater(this::render);
+        }
+    }
+
+    /**
+     * Hands all pending cell changes to the renderer. Runs on the JavaFX application thread.
+     */
+    private void render() {
+        synchronized (pendingLock) {
+            for (int word = 0; word < dirty.length; word++) {
+                pulseDirty[word] = dirty[word];
+                dirty[word] = 0;
+            }
+            System.arraycopy(pendingStates, 0, pulseStates, 0, cellCount);
+            pulseScheduled = false;
+        }
+        for (int word = 0; word < pulseDirty.length; word++) {
+            for (long bits = pulseDirty[word]; bits != 0; bits &= bits - 1) {
+                int cell = word * 64 + Long.numberOfTrailingZeros(bits);
+                if (pulseStates[cell] != renderedStates[cell]) {
+                    renderer.renderCell(cell / size, cell % size, pulseStates[cell]);
+                    renderedStates[cell] = pulseStates[cell];
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package kth.view;
+
+import javafx.scene.Node;
+
+/**
+ * A {@code BoardRenderer} draws the cells of the board for {@link BoardPane}. The pane
+ * keeps track of what every cell should look like and calls the renderer, on the JavaFX
+ * application thread, only for the cells whose state changed.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public interface BoardRenderer {
+
+    /**
+     * Receives clicks on the cells of the board.
+     */
+    @FunctionalInterface
+    interface CellClickListener {
+
+        /**
+         * Called when the player clicks a cell.
+         *
+         * @param row the row index of the cell.
+         * @param col the column index of the cell.
+         */
+        void cellClicked(int row, int col);
+    }
+
+    /**
+     * Returns the node that shows the board. The node is the same for the lifetime of the renderer.
+     *
+     * @return the board node.
+     */
+    Node getNode();
+
+    /**
+     * Returns the number of rows and columns the renderer draws.
+     *
+     * @return the size of the board.
+     */
+    int getSize();
+
+    /**
+     * Sets the listener that receives clicks on cells that are not given.
+     *
+     * @param listener the click listener.
+     */
+    void setCellClickListener(CellClickListener listener);
+
+    /**
+     * Draws one cell in a new state.
+     *
+     * @param row the row index of the cell.
+     * @param col the column index of the cell.
+     * @param state the new state of the cell, packed by {@code TileState}.
+     */
+    void renderCell(int row, int col, long state);
+}
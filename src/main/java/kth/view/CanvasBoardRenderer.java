@@ -0,0 +1,162 @@
+package kth.view;
+
+import javafx.geometry.Insets;
+import javafx.geometry.VPos;
+import javafx.scene.Node;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.layout.StackPane;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.FontWeight;
+import javafx.scene.text.TextAlignment;
+
+/**
+ * The {@code CanvasBoardRenderer} class draws the whole board onto a single {@code Canvas}.
+ * The scene graph holds one node however large the board is, a changed cell is redrawn
+ * by repainting only its own square, and clicks are mapped to cells arithmetically from
+ * the mouse position; clicks on given and hint cells are ignored, as they cannot be
+ * changed. This keeps 16x16 and 25x25 boards as responsive as the 9x9 one.
+ * <p>
+ * Cells are made large enough for their pencil marks to stay legible, so a 25x25 board
+ * is drawn larger than the 9x9 one.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class CanvasBoardRenderer implements BoardRenderer {
+    private static final double BOARD_SIZE = 450;
+    private static final double MIN_CELL_SIZE = 24;
+    // The smallest legible pencil mark; a cell holds boxSize * boxSize of them
+    private static final double MIN_PENCIL_SIZE = 7;
+    private static final double THIN_LINE = 1;
+    private static final double THICK_LINE = 3;
+    private static final Color GIVEN_COLOR = Color.LIGHTGRAY;
+    private static final Color HINT_COLOR = Color.LIGHTBLUE;
+    private static final Color SELECTED_COLOR = Color.LIGHTYELLOW;
+
+    private final int size;
+    private final int boxSize;
+    private final double cellSize;
+    private final long[] states;
+    private final Canvas canvas;
+    private final GraphicsContext graphics;
+    private final Font valueFont;
+    private final Font givenFont;
+    private final Font pencilFont;
+    private final StackPane root;
+    private CellClickListener listener;
+
+    /**
+     * Constructs a renderer for a board with the given number of rows and columns and
+     * draws the empty grid.
+     *
+     * @param size the size of the board, a square number.
+     * @throws IllegalArgumentException if the size is not a square number.
+     */
+    public CanvasBoardRenderer(int size) {
+        this.size = size;
+        this.boxSize = (int) Math.round(Math.sqrt(size));
+        if (size < 1 || boxSize * boxSize != size) {
+            throw new IllegalArgumentException("Board size must be a square number: " + size);
+        }
+        this.states = new long[size * size];
+        this.cellSize = Math.max(Math.max(MIN_CELL_SIZE, boxSize * MIN_PENCIL_SIZE), Math.floor(BOARD_SIZE / size));
+        double extent = size * cellSize + THICK_LINE;
+        this.canvas = new Canvas(extent, extent);
+        this.graphics = canvas.getGraphicsContext2D();
+        this.valueFont = Font.font("Monospaced", cellSize * 0.45);
+        this.givenFont = Font.font("Monospaced", FontWeight.BOLD, cellSize * 0.45);
+        this.pencilFont = Font.font("Monospaced", Math.max(MIN_PENCIL_SIZE, cellSize * 0.8 / boxSize));
+
+        graphics.setTextAlign(TextAlignment.CENTER);
+        graphics.setTextBaseline(VPos.CENTER);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                renderCell(row, col, 0);
+            }
+        }
+
+        canvas.setOnMouseClicked(event -> {
+            int col = (int) ((event.getX() - THICK_LINE / 2) / cellSize);
+            int row = (int) ((event.getY() - THICK_LINE / 2) / cellSize);
+            if (listener != null && row >= 0 && row < size && col >= 0 && col < size
+                    && (states[row * size + col] & (TileState.GIVEN | TileState.HINT)) == 0) {
+                listener.cellClicked(row, col);
+            }
+        });
+
+        root = new StackPane(canvas);
+        root.setPadding(new Insets(35, 20, 0, 10));
+    }
+
+    @Override
+    public Node getNode() {
+        return root;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public void setCellClickListener(CellClickListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void renderCell(int row, int col, long state) {
+        states[row * size + col] = state;
+        double x = THICK_LINE / 2 + col * cellSize;
+        double y = THICK_LINE / 2 + row * cellSize;
+        int value = TileState.valueOf(state);
+        boolean given = TileState.is(state, TileState.GIVEN);
+
+        graphics.setFill(given ? GIVEN_COLOR
+                : TileState.is(state, TileState.HINT) ? HINT_COLOR
+                : TileState.is(state, TileState.SELECTED) ? SELECTED_COLOR
+                : Color.WHITE);
+        graphics.fillRect(x, y, cellSize, cellSize);
+
+        graphics.setFill(Color.BLACK);
+        if (value != 0) {
+            graphics.setFont(given || TileState.is(state, TileState.HINT) ? givenFont : valueFont);
+            graphics.fillText(TileState.textOf(value), x + cellSize / 2, y + cellSize / 2);
+        } else if (TileState.candidatesOf(state) != 0) {
+            drawPencilMarks(x, y, TileState.candidatesOf(state));
+        }
+        drawBorders(row, col, x, y);
+    }
+
+    /**
+     * Draws the candidates of a cell in a small grid with one slot per value, laid out
+     * like the cells of a box.
+     */
+    private void drawPencilMarks(double x, double y, int mask) {
+        double slot = cellSize / boxSize;
+        graphics.setFont(pencilFont);
+        for (int bits = mask; bits != 0; bits &= bits - 1) {
+            int index = Integer.numberOfTrailingZeros(bits);
+            graphics.fillText(TileState.textOf(index + 1),
+                    x + (index % boxSize + 0.5) * slot, y + (index / boxSize + 0.5) * slot);
+        }
+    }
+
+    /**
+     * Strokes the four edges of a cell, thick where the edge is a box boundary. Repainting
+     * a cell covers half of the lines around it, so they are always drawn again.
+     */
+    private void drawBorders(int row, int col, double x, double y) {
+        graphics.setStroke(Color.BLACK);
+        strokeLine(row % boxSize == 0, x, y, x + cellSize, y);
+        strokeLine((row + 1) % boxSize == 0, x, y + cellSize, x + cellSize, y + cellSize);
+        strokeLine(col % boxSize == 0, x, y, x, y + cellSize);
+        strokeLine((col + 1) % boxSize == 0, x + cellSize, y, x + cellSize, y + cellSize);
+    }
+
+    private void strokeLine(boolean thick, double x1, double y1, double x2, double y2) {
+        graphics.setLineWidth(thick ? THICK_LINE : THIN_LINE);
+        graphics.strokeLine(x1, y1, x2, y2);
+    }
+}
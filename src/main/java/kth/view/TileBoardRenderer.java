@@ -0,0 +1,147 @@
+package kth.view;
+
+import javafx.css.PseudoClass;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.layout.GridPane;
+
+/**
+ * The {@code TileBoardRenderer} class draws the board as one {@code Label} per cell, grouped
+ * in a {@code GridPane} per box. The tiles are created once and styled by {@code board.css}
+ * through the {@code given}, {@code hint}, {@code candidates} and {@code selected}
+ * pseudo-classes. It suits the standard 9x9 board; larger boards are better served by
+ * {@link CanvasBoardRenderer}.
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+public class TileBoardRenderer implements BoardRenderer {
+    private static final PseudoClass GIVEN = PseudoClass.getPseudoClass("given");
+    private static final PseudoClass HINT = PseudoClass.getPseudoClass("hint");
+    private static final PseudoClass CANDIDATES = PseudoClass.getPseudoClass("candidates");
+    private static final PseudoClass SELECTED = PseudoClass.getPseudoClass("selected");
+
+    private final int size;
+    private final int boxSize;
+    private final Label[] tiles;
+    private final long[] states;
+    private final String[] pencilMarks;
+    private final GridPane root = new GridPane();
+    private CellClickListener listener;
+
+    /**
+     * Constructs a renderer for a board with the given number of rows and columns.
+     *
+     * @param size the size of the board, a square number.
+     * @throws IllegalArgumentException if the size is not a square number.
+     */
+    public TileBoardRenderer(int size) {
+        this.size = size;
+        this.boxSize = (int) Math.round(Math.sqrt(size));
+        if (size < 1 || boxSize * boxSize != size) {
+            throw new IllegalArgumentException("Board size must be a square number: " + size);
+        }
+        this.tiles = new Label[size * size];
+        this.states = new long[size * size];
+        this.pencilMarks = new String[size <= 9 ? 1 << size : 0];
+        createTiles();
+    }
+
+    /**
+     * Creates the grid of tiles, organized into boxes, once for the lifetime of the renderer.
+     */
+    private void createTiles() {
+        root.setPadding(new Insets(35, 20, 0, 10));
+        double tileSize = Math.max(24, 450.0 / size);
+
+        for (int boxRow = 0; boxRow < boxSize; boxRow++) {
+            for (int boxCol = 0; boxCol < boxSize; boxCol++) {
+                GridPane section = new GridPane();
+                section.getStyleClass().add("sudoku-section");
+
+                for (int row = 0; row < boxSize; row++) {
+                    for (int col = 0; col < boxSize; col++) {
+                        int actualRow = boxRow * boxSize + row;
+                        int actualCol = boxCol * boxSize + col;
+
+                        Label tile = new Label();
+                        tile.setPrefSize(tileSize, tileSize);
+                        tile.setAlignment(Pos.CENTER);
+                        tile.getStyleClass().add("sudoku-tile");
+                        tile.setOnMouseClicked(event -> {
+                            if (listener != null) {
+                                listener.cellClicked(actualRow, actualCol);
+                            }
+                        });
+
+                        tiles[actualRow * size + actualCol] = tile;
+                        section.add(tile, col, row);
+                    }
+                }
+
+                root.add(section, boxCol, boxRow);
+            }
+        }
+    }
+
+    @Override
+    public Node getNode() {
+        return root;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public void setCellClickListener(CellClickListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void renderCell(int row, int col, long state) {
+        int cell = row * size + col;
+        Label tile = tiles[cell];
+        long oldState = states[cell];
+        states[cell] = state;
+        int value = TileState.valueOf(state);
+        int candidates = TileState.candidatesOf(state);
+        boolean given = TileState.is(state, TileState.GIVEN);
+        boolean hint = TileState.is(state, TileState.HINT);
+
+        tile.setText(value != 0 ? TileState.textOf(value) : candidates != 0 ? pencilMarks(candidates) : "");
+        if (((oldState ^ state) & (TileState.GIVEN | TileState.HINT)) != 0) {
+            tile.pseudoClassStateChanged(GIVEN, given);
+            tile.pseudoClassStateChanged(HINT, hint);
+            tile.setMouseTransparent(given);
+            tile.setDisable(hint);
+        }
+        tile.pseudoClassStateChanged(SELECTED, TileState.is(state, TileState.SELECTED));
+        tile.pseudoClassStateChanged(CANDIDATES, value == 0 && candidates != 0);
+    }
+
+    /**
+     * Formats a candidate mask as one line per box row, with a blank for every value that
+     * is not a candidate. On boards up to 9x9 the strings are cached per mask.
+     */
+    private String pencilMarks(int mask) {
+        if (mask < pencilMarks.length && pencilMarks[mask] != null) {
+            return pencilMarks[mask];
+        }
+        StringBuilder text = new StringBuilder(2 * size);
+        for (int value = 1; value <= size; value++) {
+            text.append((mask & (1 << (value - 1))) != 0 ? TileState.textOf(value) : " ");
+            if (value < size) {
+                text.append(value % boxSize == 0 ? '\n' : ' ');
+            }
+        }
+        String marks = text.toString();
+        if (mask < pencilMarks.length) {
+            pencilMarks[mask] = marks;
+        }
+        return marks;
+    }
+}
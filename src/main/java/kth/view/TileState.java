@@ -0,0 +1,67 @@
+package kth.view;
+
+import kth.model.SudokuUtilities;
+
+/**
+ * The {@code TileState} class packs everything a renderer needs to draw one cell into a
+ * single {@code long}, so that pending and rendered tile states can be kept in flat arrays
+ * and compared in one step:
+ * <pre>
+ *   bits  0-7    value (0 for an empty cell)
+ *   bits  8-39   candidate mask, bit (8 + d - 1) for digit d
+ *   bit  40      given cell
+ *   bit  41      cell filled by a hint
+ *   bit  42      selected cell
+ * </pre>
+ *
+ * @author Majd & Marvin
+ * @version 1.0
+ */
+final class TileState {
+
+    static final long GIVEN = 1L << 40;
+    static final long HINT = 1L << 41;
+    static final long SELECTED = 1L << 42;
+    static final long FLAGS = GIVEN | HINT | SELECTED;
+
+    private static final int CANDIDATE_SHIFT = 8;
+    private static final String[] TEXTS = new String[26];
+
+    static {
+        for (int value = 1; value < TEXTS.length; value++) {
+            TEXTS[value] = String.valueOf(SudokuUtilities.convertSudokuIntToChar(value));
+        }
+        TEXTS[0] = "";
+    }
+
+    private TileState() {
+    }
+
+    static long ofValue(int value) {
+        return value;
+    }
+
+    static long ofCandidates(int candidates) {
+        return (long) candidates << CANDIDATE_SHIFT;
+    }
+
+    static int valueOf(long state) {
+        return (int) (state & 0xFF);
+    }
+
+    static int candidatesOf(long state) {
+        return (int) (state >>> CANDIDATE_SHIFT);
+    }
+
+    static boolean is(long state, long flag) {
+        return (state & flag) != 0;
+    }
+
+    /**
+     * Returns the text of a value: digits up to 9, then letters from A, as used on
+     * boards larger than 9x9.
+     */
+    static String textOf(int value) {
+        return TEXTS[value];
+    }
+}
@@ -1,6 +1,9 @@
 module kth.labb3a {
     requires javafx.controls;
     requires javafx.fxml;
+    requires jdk.httpserver;
+    requires java.net.http;
+    requires jdk.jfr;
 
 
     opens kth to javafx.fxml;